@@ -0,0 +1,651 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Left leaning red black tree of buildings keyed on building no whose nodes live in pooled primitive arrays. A node
+ * is an index into parallel arrays of child indexes, keys and inline building metadata, with colors packed one bit
+ * per node. Slots of deleted nodes are chained into a free list and reused, so inserts do not allocate once the
+ * pool has grown to the peak no of buildings.
+ */
+public class ArrayRedBlackTree implements BuildingTree {
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+    private static final int NIL = 0; // slot 0 is a black sentinel standing in for null links
+    private static final int MAX_HEIGHT = 64; // a left leaning red black tree is at most 2 * log(n + 1) high
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private int[] left;           // slot of left child
+    private int[] right;          // slot of right child; next free slot for slots in the free list
+    private int[] keys;           // building no
+    private int[] executedTimes;  // executed time of building
+    private int[] totalTimes;     // total time of building
+    private int[] sizes;          // no of nodes in subtree rooted at slot; 0 for NIL
+    private long[] colors;        // color bit of every slot
+    private int root = NIL;
+    private int used = 1;         // slots below used have been handed out at least once
+    private int free = NIL;       // first slot of the free list
+
+    private static final boolean LEFT = true;
+    private static final boolean RIGHT = false;
+
+    private final int[] stack = new int[MAX_HEIGHT]; // path of pending nodes of a range scan
+    private final int[] path = new int[MAX_HEIGHT];  // path from root of the node being inserted or deleted
+    private final boolean[] directions = new boolean[MAX_HEIGHT]; // direction taken from each node on path
+    private boolean debug = false; // validate the tree after every update
+    private Progress progress = null; // progress of the running building; null if stored executed times are current
+    private Metrics metrics = null;   // counters of rotations and color flips; null if metrics are off
+    private final RangePrinter rangePrinter = new RangePrinter();
+
+    public ArrayRedBlackTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // initial capacity is a hint of the expected no of buildings; pool grows beyond it on demand
+    public ArrayRedBlackTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1) + 1;
+        left = new int[capacity];
+        right = new int[capacity];
+        keys = new int[capacity];
+        executedTimes = new int[capacity];
+        totalTimes = new int[capacity];
+        sizes = new int[capacity];
+        colors = new long[(capacity + 63) >>> 6];
+    }
+
+    // validate bst, subtree size and red black invariants after every update when debug is on
+    @Override
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    // derive the executed time of the running building lazily from progress
+    @Override
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // current executed time of building with building no: key given its stored executed time
+    private int executedTime(int key, int storedExecutedTime) {
+        return progress == null ? storedExecutedTime : progress.executedTime(key, storedExecutedTime);
+    }
+
+    private boolean isRed(int x) {
+        return (colors[x >>> 6] & (1L << x)) != 0;
+    }
+
+    private void setColor(int x, boolean color) {
+        if (color == RED) colors[x >>> 6] |= 1L << x;
+        else colors[x >>> 6] &= ~(1L << x);
+    }
+
+    // check if tree is empty
+    @Override
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    // no of buildings in tree
+    @Override
+    public int size() {
+        return sizes[root];
+    }
+
+    // slot of node with the given key in subtree rooted at x; NIL if no such key
+    private int find(int x, int key) {
+        while (x != NIL) {
+            int cmp = Integer.compare(key, keys[x]);
+            if (cmp < 0) x = left[x];
+            else if (cmp > 0) x = right[x];
+            else return x;
+        }
+        return NIL;
+    }
+
+    // check if tree contains building with building no: key
+    @Override
+    public boolean contains(int key) {
+        return find(root, key) != NIL;
+    }
+
+    @Override
+    public int getExecutedTime(int key) {
+        int x = find(root, key);
+        return x == NIL ? -1 : executedTime(key, executedTimes[x]);
+    }
+
+    @Override
+    public int getTotalTime(int key) {
+        int x = find(root, key);
+        return x == NIL ? -1 : totalTimes[x];
+    }
+
+    @Override
+    public void setExecutedTime(int key, int executedTime) {
+        int x = find(root, key);
+        if (x == NIL) throw new IllegalArgumentException("building " + key + " not in tree");
+        executedTimes[x] = executedTime;
+    }
+
+    // insert building into tree with building no as key; updates building if key already exists
+    @Override
+    public void put(int key, int executedTime, int totalTime) {
+        if (root == NIL) {
+            root = allocate(key, executedTime, totalTime);
+            setColor(root, BLACK);
+            return;
+        }
+
+        // walk down to the node with the key or to the NIL link where it belongs
+        int top = 0;
+        int h = root;
+        while (true) {
+            path[top] = h;
+            if (key < keys[h]) {
+                directions[top++] = LEFT;
+                if (left[h] == NIL) {
+                    int x = allocate(key, executedTime, totalTime); // may replace the arrays when the pool grows
+                    left[h] = x;
+                    break;
+                }
+                h = left[h];
+            } else if (key > keys[h]) {
+                directions[top++] = RIGHT;
+                if (right[h] == NIL) {
+                    int x = allocate(key, executedTime, totalTime); // may replace the arrays when the pool grows
+                    right[h] = x;
+                    break;
+                }
+                h = right[h];
+            } else {
+                executedTimes[h] = executedTime; // tree shape does not change when updating a building
+                totalTimes[h] = totalTime;
+                return;
+            }
+        }
+
+        // walk back up the path, fixing up any right-leaning links and subtree sizes
+        while (top > 0) {
+            h = path[--top];
+            if (isRed(right[h]) && !isRed(left[h])) h = rotateLeft(h);
+            if (isRed(left[h]) && isRed(left[left[h]])) h = rotateRight(h);
+            if (isRed(left[h]) && isRed(right[h])) flipColors(h);
+            sizes[h] = sizes[left[h]] + sizes[right[h]] + 1;
+            attach(top, h);
+        }
+        setColor(root, BLACK);
+        if (debug) check();
+    }
+
+    // insert buildings sorted on building no; an empty tree is built in linear time and a batch which is large
+    // compared to the tree is merged with the existing buildings and the pool is rebuilt in linear time
+    @Override
+    public void putAllSorted(List<Building> buildings) {
+        int count = buildings.size();
+        for (int i = 1; i < count; i++)
+            if (buildings.get(i - 1).getBuildingNo() >= buildings.get(i).getBuildingNo())
+                throw new IllegalArgumentException("buildings not sorted on building no at index " + i);
+        if (count == 0) return;
+        int n = size();
+        int total = n + count;
+        // inserting one by one costs about log(total) per building while a rebuild costs about total
+        if (n > 0 && (long) count * (32 - Integer.numberOfLeadingZeros(total)) < total) {
+            for (Building building : buildings)
+                put(building.getBuildingNo(), building.getExecutedTime(), building.getTotalTime());
+            return;
+        }
+
+        // merge existing buildings in key order with the batch; batch replaces buildings with the same key
+        int[] mergedKeys = new int[total];
+        int[] mergedExecutedTimes = new int[total];
+        int[] mergedTotalTimes = new int[total];
+        int m = 0;
+        int i = 0;
+        int top = 0;
+        int x = root;
+        while (x != NIL || top > 0) {
+            while (x != NIL) {
+                stack[top++] = x;
+                x = left[x];
+            }
+            x = stack[--top];
+            while (i < count && buildings.get(i).getBuildingNo() < keys[x]) {
+                Building building = buildings.get(i++);
+                mergedKeys[m] = building.getBuildingNo();
+                mergedExecutedTimes[m] = building.getExecutedTime();
+                mergedTotalTimes[m++] = building.getTotalTime();
+            }
+            if (i < count && buildings.get(i).getBuildingNo() == keys[x]) {
+                Building building = buildings.get(i++);
+                mergedKeys[m] = building.getBuildingNo();
+                mergedExecutedTimes[m] = building.getExecutedTime();
+                mergedTotalTimes[m++] = building.getTotalTime();
+            } else {
+                mergedKeys[m] = keys[x];
+                mergedExecutedTimes[m] = executedTimes[x];
+                mergedTotalTimes[m++] = totalTimes[x];
+            }
+            x = right[x];
+        }
+        while (i < count) {
+            Building building = buildings.get(i++);
+            mergedKeys[m] = building.getBuildingNo();
+            mergedExecutedTimes[m] = building.getExecutedTime();
+            mergedTotalTimes[m++] = building.getTotalTime();
+        }
+
+        // hand out the slots of the pool again from the start
+        free = NIL;
+        used = 1;
+        while (keys.length < m + 1) grow();
+        root = build(mergedKeys, mergedExecutedTimes, mergedTotalTimes, 0, m, blackHeight(m));
+        if (debug) check();
+    }
+
+    // build a subtree with the given no of black links on every path from sorted buildings starting at lo; it is
+    // built as a 2-3 tree in which 3-nodes are a black node with a red left child
+    private int build(int[] buildingNos, int[] executed, int[] totals, int lo, int count, int blackHeight) {
+        if (count == 0) return NIL;
+        long maxChild = maxKeys(blackHeight - 1);
+        if (count - 1 <= 2 * maxChild) {
+            // 2-node: split the remaining buildings evenly
+            int leftCount = count / 2;
+            int k = lo + leftCount;
+            int h = allocate(buildingNos[k], executed[k], totals[k]);
+            setColor(h, BLACK);
+            left[h] = build(buildingNos, executed, totals, lo, leftCount, blackHeight - 1);
+            right[h] = build(buildingNos, executed, totals, k + 1, count - 1 - leftCount, blackHeight - 1);
+            sizes[h] = count;
+            return h;
+        }
+        // 3-node: split the remaining buildings evenly in three
+        int rest = count - 2;
+        int first = rest / 3 + (rest % 3 > 0 ? 1 : 0);
+        int second = rest / 3 + (rest % 3 > 1 ? 1 : 0);
+        int x = allocate(buildingNos[lo + first], executed[lo + first], totals[lo + first]);
+        left[x] = build(buildingNos, executed, totals, lo, first, blackHeight - 1);
+        right[x] = build(buildingNos, executed, totals, lo + first + 1, second, blackHeight - 1);
+        sizes[x] = first + second + 1;
+        int k = lo + first + 1 + second;
+        int h = allocate(buildingNos[k], executed[k], totals[k]);
+        setColor(h, BLACK);
+        left[h] = x;
+        right[h] = build(buildingNos, executed, totals, k + 1, rest - first - second, blackHeight - 1);
+        sizes[h] = count;
+        return h;
+    }
+
+    // largest black height of a tree of count nodes, whose 2-3 tree has only 2-nodes above the bottom level
+    private static int blackHeight(int count) {
+        return 31 - Integer.numberOfLeadingZeros(count + 1);
+    }
+
+    // largest no of keys in a 2-3 tree with the given black height i.e one with only 3-nodes
+    private static long maxKeys(int blackHeight) {
+        long max = 1;
+        for (int i = 0; i < blackHeight; i++) max *= 3;
+        return max - 1;
+    }
+
+    // deletes building with specified key i.e building no in a single walk down the tree; returns false if the
+    // building is not present
+    @Override
+    public boolean delete(int key) {
+        if (root == NIL) return false;
+
+        // if both children of root are black, set root to red
+        if (!isRed(left[root]) && !isRed(right[root]))
+            setColor(root, RED);
+
+        // walk down keeping the current node or its left child red, so that the node to be removed is red
+        boolean found = false;
+        int top = 0;
+        int h = root;
+        while (true) {
+            if (key < keys[h]) {
+                if (left[h] == NIL) break; // key is not present
+                if (!isRed(left[h]) && !isRed(left[left[h]])) {
+                    h = moveRedLeft(h);
+                    attach(top, h);
+                }
+                path[top] = h;
+                directions[top++] = LEFT;
+                h = left[h];
+            } else {
+                if (isRed(left[h])) {
+                    h = rotateRight(h);
+                    attach(top, h);
+                }
+                if (key == keys[h] && (right[h] == NIL)) {
+                    attach(top, NIL);
+                    release(h);
+                    found = true;
+                    break;
+                }
+                if (right[h] == NIL) break; // key is not present
+                if (!isRed(right[h]) && !isRed(left[right[h]])) {
+                    h = moveRedRight(h);
+                    attach(top, h);
+                }
+                path[top] = h;
+                directions[top++] = RIGHT;
+                if (key == keys[h]) {
+                    // replace the building with its successor and remove the node of the successor instead
+                    int target = h;
+                    h = right[h];
+                    while (left[h] != NIL) {
+                        if (!isRed(left[h]) && !isRed(left[left[h]])) {
+                            h = moveRedLeft(h);
+                            attach(top, h);
+                        }
+                        path[top] = h;
+                        directions[top++] = LEFT;
+                        h = left[h];
+                    }
+                    keys[target] = keys[h];
+                    executedTimes[target] = executedTimes[h];
+                    totalTimes[target] = totalTimes[h];
+                    attach(top, NIL);
+                    release(h);
+                    found = true;
+                    break;
+                }
+                h = right[h];
+            }
+        }
+
+        // walk back up the path, restoring the red black invariants and subtree sizes
+        while (top > 0) {
+            h = balance(path[--top]);
+            attach(top, h);
+        }
+        if (!isEmpty()) setColor(root, BLACK);
+        if (debug) check();
+        return found;
+    }
+
+    // link x as the child of the node at depth - 1 on the path in the direction taken from it; root if depth is 0
+    private void attach(int depth, int x) {
+        if (depth == 0) root = x;
+        else if (directions[depth - 1] == LEFT) left[path[depth - 1]] = x;
+        else right[path[depth - 1]] = x;
+    }
+
+    // make left leaning link lean to the right
+    private int rotateRight(int h) {
+        if (metrics != null) metrics.rotations++;
+        int x = left[h];
+        left[h] = right[x];
+        right[x] = h;
+        setColor(x, isRed(h));
+        setColor(h, RED);
+        sizes[x] = sizes[h];
+        sizes[h] = sizes[left[h]] + sizes[right[h]] + 1;
+        return x;
+    }
+
+    // make right leaning link lean to the left
+    private int rotateLeft(int h) {
+        if (metrics != null) metrics.rotations++;
+        int x = right[h];
+        right[h] = left[x];
+        left[x] = h;
+        setColor(x, isRed(h));
+        setColor(h, RED);
+        sizes[x] = sizes[h];
+        sizes[h] = sizes[left[h]] + sizes[right[h]] + 1;
+        return x;
+    }
+
+    // flip the colors of a node and its two children
+    private void flipColors(int h) {
+        if (metrics != null) metrics.colorFlips++;
+        setColor(h, !isRed(h));
+        setColor(left[h], !isRed(left[h]));
+        setColor(right[h], !isRed(right[h]));
+    }
+
+    // Assuming that h is red and both h.left and h.left.left
+    // are black, make h.left or one of its children red.
+    private int moveRedLeft(int h) {
+        if (metrics != null) metrics.moveRedLefts++;
+        flipColors(h);
+        if (isRed(left[right[h]])) {
+            right[h] = rotateRight(right[h]);
+            h = rotateLeft(h);
+            flipColors(h);
+        }
+        return h;
+    }
+
+    // Assuming that h is red and both h.right and h.right.left
+    // are black, make h.right or one of its children red.
+    private int moveRedRight(int h) {
+        if (metrics != null) metrics.moveRedRights++;
+        flipColors(h);
+        if (isRed(left[left[h]])) {
+            h = rotateRight(h);
+            flipColors(h);
+        }
+        return h;
+    }
+
+    // maintain red black tree invariant property
+    private int balance(int h) {
+        if (isRed(right[h])) h = rotateLeft(h);
+        if (isRed(left[h]) && isRed(left[left[h]])) h = rotateRight(h);
+        if (isRed(left[h]) && isRed(right[h])) flipColors(h);
+        sizes[h] = sizes[left[h]] + sizes[right[h]] + 1;
+        return h;
+    }
+
+    // take a red node from the free list or from the unused end of the pool
+    private int allocate(int key, int executedTime, int totalTime) {
+        int x;
+        if (free != NIL) {
+            x = free;
+            free = right[x];
+        } else {
+            if (used == keys.length) grow();
+            x = used++;
+        }
+        left[x] = NIL;
+        right[x] = NIL;
+        keys[x] = key;
+        executedTimes[x] = executedTime;
+        totalTimes[x] = totalTime;
+        sizes[x] = 1;
+        setColor(x, RED);
+        return x;
+    }
+
+    // return slot of a deleted node to the free list
+    private void release(int x) {
+        right[x] = free;
+        free = x;
+    }
+
+    // grow the pool by half
+    private void grow() {
+        int capacity = keys.length + (keys.length >> 1) + 1;
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        executedTimes = Arrays.copyOf(executedTimes, capacity);
+        totalTimes = Arrays.copyOf(totalTimes, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        colors = Arrays.copyOf(colors, (capacity + 63) >>> 6);
+    }
+
+    // check if bst, subtree size and red black invariants have been maintained
+    private void check() {
+        if (isRed(NIL) || sizes[NIL] != 0 || !isBST(root, Long.MIN_VALUE, Long.MAX_VALUE)
+                || !isSizeConsistent(root) || !isBalanced())
+            throw new IllegalStateException("red black tree invariants violated");
+    }
+
+    // check that size of every subtree is consistent with its children
+    private boolean isSizeConsistent(int x) {
+        if (x == NIL) return true;
+        if (sizes[x] != sizes[left[x]] + sizes[right[x]] + 1) return false;
+        return isSizeConsistent(left[x]) && isSizeConsistent(right[x]);
+    }
+
+    // check whether subtree rooted at x satisfies symmetric order with keys strictly between min and max
+    private boolean isBST(int x, long min, long max) {
+        if (x == NIL) return true;
+        if (keys[x] <= min || keys[x] >= max) return false;
+        return isBST(left[x], min, keys[x]) && isBST(right[x], keys[x], max);
+    }
+
+    // check if all paths from root to leaf have same no of black links
+    private boolean isBalanced() {
+        int black = 0;     // number of black links on path from root to min
+        int x = root;
+        while (x != NIL) {
+            if (!isRed(x)) black++;
+            x = left[x];
+        }
+        return isBalanced(root, black);
+    }
+
+    private boolean isBalanced(int x, int black) {
+        if (x == NIL) return black == 0;
+        if (!isRed(x)) black--;
+        return isBalanced(left[x], black) && isBalanced(right[x], black);
+    }
+
+    // no of buildings with building no lesser than key
+    @Override
+    public int rank(int key) {
+        int rank = 0;
+        int x = root;
+        while (x != NIL) {
+            if (key < keys[x]) {
+                x = left[x];
+            } else if (key > keys[x]) {
+                rank += 1 + sizes[left[x]];
+                x = right[x];
+            } else {
+                return rank + sizes[left[x]];
+            }
+        }
+        return rank;
+    }
+
+    // building no with the given rank i.e the building no which has rank smaller building nos
+    @Override
+    public int select(int rank) {
+        if (rank < 0 || rank >= size())
+            throw new IllegalArgumentException("rank out of range: " + rank);
+        int x = root;
+        while (true) {
+            int leftSize = sizes[left[x]];
+            if (rank < leftSize) {
+                x = left[x];
+            } else if (rank > leftSize) {
+                rank -= leftSize + 1;
+                x = right[x];
+            } else {
+                return keys[x];
+            }
+        }
+    }
+
+    // no of buildings with building no in the range of low and hi
+    @Override
+    public int countInRange(int low, int hi) {
+        if (low > hi) return 0;
+        return rank(hi) - rank(low) + (contains(hi) ? 1 : 0);
+    }
+
+    //print a particular building
+    @Override
+    public void print(int key, OutputWriter out) throws IOException {
+        int x = find(root, key);
+        if (x == NIL)
+            out.writeBuilding(0, 0, 0); // output if key doesn't exist
+        else
+            out.writeBuilding(keys[x], executedTime(keys[x], executedTimes[x]), totalTimes[x]);
+        out.newLine();
+    }
+
+    // visit buildings with keys(building no) in the range of low and hi in ascending order using an explicit stack
+    @Override
+    public void forEachInRange(int low, int hi, BuildingVisitor visitor) throws IOException {
+        int top = 0;
+        int x = root;
+        while (true) {
+            // push the path to the smallest key not lesser than low, skipping subtrees with keys lesser than low
+            while (x != NIL) {
+                if (keys[x] < low) {
+                    x = right[x];
+                } else {
+                    stack[top++] = x;
+                    x = left[x];
+                }
+            }
+            if (top == 0)
+                return;
+            x = stack[--top];
+            if (keys[x] > hi)
+                return; // every remaining key is higher than hi
+            visitor.visit(keys[x], executedTime(keys[x], executedTimes[x]), totalTimes[x]);
+            x = right[x];
+        }
+    }
+
+    // visit buildings in any of the sorted disjoint ranges in ascending order in a single walk like forEachInRange
+    @Override
+    public void forEachInRanges(int[] lows, int[] highs, int count, BuildingVisitor visitor) throws IOException {
+        if (count == 0)
+            return;
+        int range = 0;
+        int low = lows[0];
+        int hi = highs[0];
+        int top = 0;
+        int x = root;
+        while (true) {
+            while (x != NIL) {
+                if (keys[x] < low) {
+                    x = right[x];
+                } else {
+                    stack[top++] = x;
+                    x = left[x];
+                }
+            }
+            if (top == 0)
+                return;
+            x = stack[--top];
+            if (keys[x] > hi) {
+                // skip the ranges below the key
+                do {
+                    range++;
+                } while (range < count && highs[range] < keys[x]);
+                if (range == count)
+                    return;
+                low = lows[range];
+                hi = highs[range];
+            }
+            // pending nodes pushed for an earlier range may lie before the current range
+            if (keys[x] >= low)
+                visitor.visit(keys[x], executedTime(keys[x], executedTimes[x]), totalTimes[x]);
+            x = right[x];
+        }
+    }
+
+    //prints all buildings in the range of low and hi
+    @Override
+    public void print(int low, int hi, OutputWriter out) throws IOException {
+        if (root == NIL)
+            out.writeBuilding(0, 0, 0);
+        else
+            forEachInRange(low, hi, rangePrinter.reset(out));
+        out.newLine();
+    }
+}
@@ -0,0 +1,174 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates many cities in parallel, one instruction file per city, and prints aggregate throughput. Every city
+ * gets its own simulation, so cities share nothing but the warm start inventory, which is only read.
+ *
+ * usage: java BatchRunner [--threads=n] [--out-dir=dir] [simulation options] instruction files...
+ * The output of every city is written to "instruction file name.out" in the out dir, by default the dir of the
+ * instruction file. Inputs whose outputs would be the same file, like files of the same name in different dirs with
+ * one out dir, are rejected before any city runs. Simulation options are the options of risingCity. Exits with 1 if
+ * any city failed and with 2 if the batch could not run at all.
+ */
+public class BatchRunner {
+    public static void main(String[] args) {
+        try {
+            SimulationConfig config = new SimulationConfig();
+            int threads = Runtime.getRuntime().availableProcessors();
+            Path outDir = null;
+            List<Path> inputs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--threads="))
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                else if (arg.startsWith("--out-dir="))
+                    outDir = Paths.get(arg.substring("--out-dir=".length()));
+                else if (arg.startsWith("--")) {
+                    if (!config.parse(arg))
+                        throw new IllegalArgumentException("unknown option: " + arg);
+                } else
+                    inputs.add(Paths.get(arg));
+            }
+            if (inputs.isEmpty())
+                throw new IllegalArgumentException("no instruction files");
+            if (config.usesCheckpoint())
+                throw new IllegalArgumentException("checkpoints are not supported in batches");
+            if (config.usesMonitor())
+                throw new IllegalArgumentException("monitoring is not supported in batches");
+            if (outDir != null)
+                Files.createDirectories(outDir);
+
+            List<Callable<CityResult>> tasks = new ArrayList<>();
+            Map<Path, Path> inputsByOutput = new HashMap<>();
+            for (Path input : inputs) {
+                Path output = outputOf(input, outDir);
+                Path other = inputsByOutput.putIfAbsent(output.toAbsolutePath().normalize(), input);
+                if (other != null)
+                    throw new IllegalArgumentException(input + " and " + other + " would both write " + output);
+                tasks.add(new CityTask(config, input, output));
+            }
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            List<CityResult> results = new ArrayList<>();
+            try {
+                for (Future<CityResult> future : pool.invokeAll(tasks))
+                    results.add(future.get());
+            } finally {
+                pool.shutdown();
+            }
+            if (report(results, threads, System.nanoTime() - start) > 0)
+                System.exit(1);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    // output file of the city with the given instruction file
+    private static Path outputOf(Path input, Path outDir) {
+        String name = input.getFileName() + ".out";
+        if (outDir != null)
+            return outDir.resolve(name);
+        Path parent = input.toAbsolutePath().getParent();
+        return parent.resolve(name);
+    }
+
+    // print failed cities and aggregate throughput of the batch; returns the no of failed cities
+    private static int report(List<CityResult> results, int threads, long elapsedNanos) {
+        long instructions = 0;
+        long completions = 0;
+        long skippedInserts = 0;
+        long days = 0;
+        long bytes = 0;
+        long busyNanos = 0;
+        int failed = 0;
+        Metrics metrics = null; // metrics of all cities when metrics are on
+        for (CityResult result : results) {
+            if (result.error != null) {
+                failed++;
+                System.err.println("failed: " + result.input + ": " + result.error);
+                continue;
+            }
+            if (result.skippedInserts > 0)
+                System.err.println("skipped " + result.skippedInserts + " inserts of existing buildings: "
+                        + result.input);
+            instructions += result.instructions;
+            completions += result.completions;
+            skippedInserts += result.skippedInserts;
+            days += result.finishTime;
+            bytes += result.bytes;
+            busyNanos += result.nanos;
+            if (result.metrics != null) {
+                if (metrics == null) metrics = new Metrics();
+                metrics.merge(result.metrics);
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("cities:        %d (%d failed) on %d threads in %.3f s, %.1f cities/s%n",
+                results.size(), failed, threads, seconds, (results.size() - failed) / seconds);
+        System.out.printf("instructions:  %d, %.0f/s%n", instructions, instructions / seconds);
+        System.out.printf("input:         %.1f MB, %.1f MB/s%n", bytes / 1e6, bytes / 1e6 / seconds);
+        System.out.printf("completions:   %d buildings in %d simulated days%n", completions, days);
+        System.out.printf("skipped:       %d inserts of existing buildings%n", skippedInserts);
+        System.out.printf("parallelism:   %.2f busy threads on average%n", busyNanos / (double) elapsedNanos);
+        if (metrics != null)
+            metrics.report(System.out);
+        return failed;
+    }
+
+    // simulation of one city; failures are recorded in the result so that one bad file does not stop the batch
+    private static class CityTask implements Callable<CityResult> {
+        private final SimulationConfig config;
+        private final Path input;
+        private final Path output;
+
+        CityTask(SimulationConfig config, Path input, Path output) {
+            this.config = config;
+            this.input = input;
+            this.output = output;
+        }
+
+        @Override
+        public CityResult call() {
+            CityResult result = new CityResult(input);
+            long start = System.nanoTime();
+            try {
+                result.bytes = Files.size(input);
+                CitySimulation simulation = config.run(input, output);
+                result.instructions = simulation.getInstructionCount();
+                result.completions = simulation.getCompletionCount();
+                result.skippedInserts = simulation.getSkippedInsertCount();
+                result.finishTime = simulation.getFinishTime();
+                result.metrics = simulation.getMetrics();
+            } catch (Exception e) {
+                result.error = e;
+            }
+            result.nanos = System.nanoTime() - start;
+            return result;
+        }
+    }
+
+    private static class CityResult {
+        private final Path input;
+        private long instructions;
+        private long completions;
+        private long skippedInserts;
+        private int finishTime;
+        private long bytes;
+        private long nanos;
+        private Exception error;
+        private Metrics metrics;
+
+        CityResult(Path input) {
+            this.input = input;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reader of compiled instruction files. A compiled file is a header followed by fixed width records of four big
+ * endian ints: time, type, first param and second param, where type is one of the CMD_ constants of risingCity or
+ * 0 for an unknown command. The header holds a magic no, the format version, the record size, the no of records
+ * and a CRC32 of the records, which is verified when the file is opened. Records are read straight out of memory
+ * mapped windows of the file, so reading costs about as much as the I/O.
+ *
+ * header: magic int, version int, record size int, reserved int, record count long, records crc32 long
+ */
+public class BinaryInstructionReader implements InstructionSource {
+    public static final int MAGIC = 0x52434942; // "RCIB"; no text instruction starts with R
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 16;
+    private static final long WINDOW_SIZE = RECORD_SIZE << 22; // no of bytes mapped at a time, whole records
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long recordCount;
+    private MappedByteBuffer buffer;
+    private long windowStart; // file offset of the first byte in buffer
+
+    public BinaryInstructionReader(Path path) throws IOException {
+        this(path, HEADER_SIZE);
+    }
+
+    // reader continuing at the record at the given file offset
+    public BinaryInstructionReader(Path path, long offset) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // read until the whole header or end of file
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC)
+                throw new IOException("not a compiled instruction file: " + path);
+            if (header.getInt(4) != VERSION)
+                throw new IOException("unsupported compiled instruction file version " + header.getInt(4) + ": "
+                        + path);
+            if (header.getInt(8) != RECORD_SIZE)
+                throw new IOException("unsupported record size " + header.getInt(8) + ": " + path);
+            recordCount = header.getLong(16);
+            if (recordCount < 0 || fileSize != HEADER_SIZE + recordCount * RECORD_SIZE)
+                throw new IOException("compiled instruction file is truncated or too long: " + path);
+            if (offset < HEADER_SIZE || offset > fileSize || (offset - HEADER_SIZE) % RECORD_SIZE != 0)
+                throw new IllegalArgumentException("offset " + offset + " is not the start of a record");
+            if (checksum() != header.getLong(24))
+                throw new IOException("compiled instruction file checksum mismatch: " + path);
+            map(offset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return getOffset() < fileSize;
+    }
+
+    @Override
+    public boolean next(Instruction instruction) throws IOException {
+        if (!buffer.hasRemaining()) {
+            long offset = windowStart + buffer.limit();
+            if (offset >= fileSize) return false;
+            map(offset);
+        }
+        instruction.setTime(buffer.getInt());
+        instruction.setType(buffer.getInt());
+        instruction.setFirstParam(buffer.getInt());
+        instruction.setSecondParam(buffer.getInt());
+        return true;
+    }
+
+    @Override
+    public long getOffset() {
+        return windowStart + buffer.position();
+    }
+
+    @Override
+    public int getLine() {
+        return (int) ((getOffset() - HEADER_SIZE) / RECORD_SIZE) + 1;
+    }
+
+    @Override
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // map the window of the file starting at offset
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+    }
+
+    // CRC32 of all records
+    private long checksum() throws IOException {
+        CRC32 crc = new CRC32();
+        for (long offset = HEADER_SIZE; offset < fileSize; offset += WINDOW_SIZE)
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset)));
+        return crc.getValue();
+    }
+}
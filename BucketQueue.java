@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Bucket queue of buildings indexed on executed time. Every bucket holds the building nos with the same executed
+ * time in a sorted int array, and a small heap orders the non empty buckets on executed time, so the min element is
+ * the first building no of the bucket at the top of that heap. Executed times grow by at most a slot at a time, so
+ * a building mostly moves to a nearby bucket, most buckets hold a handful of buildings, and there are far fewer
+ * buckets than buildings.
+ *
+ * Only non empty buckets are stored: a map from executed time finds the slot of a bucket, and slots and building
+ * entries are pooled and reused. Memory is proportional to the largest no of buildings queued at once, however large
+ * the executed times get.
+ */
+public class BucketQueue implements BuildingQueue {
+    private static final int DEFAULT_BUCKETS = 64;
+    private static final int MIN_BUCKET_CAPACITY = 4;
+
+    // buckets; slot of every non empty bucket in the bucket pool
+    private final PositionMap bucketSlots = new PositionMap(DEFAULT_BUCKETS);
+    private int[][] buckets = new int[DEFAULT_BUCKETS][]; // sorted building nos of every bucket slot
+    private int[] bucketSizes = new int[DEFAULT_BUCKETS];
+    private int[] bucketTimes = new int[DEFAULT_BUCKETS];  // executed time of every bucket slot
+    private int[] freeBuckets = new int[DEFAULT_BUCKETS];  // stack of unused bucket slots
+    private int freeBucketCount = 0;
+    private int bucketCount = 0;                           // no of bucket slots ever used
+    // heap of non empty bucket slots ordered on executed time, and the index of every bucket slot in it
+    private int[] bucketHeap = new int[DEFAULT_BUCKETS];
+    private int[] heapIndexes = new int[DEFAULT_BUCKETS];
+
+    // buildings; slot of every building no in the entry pool
+    private final PositionMap entrySlots;
+    private int[] executedTimes;   // executed time of every entry slot
+    private int[] totalTimes;      // total time of every entry slot
+    private int[] freeEntries;     // stack of unused entry slots
+    private int freeEntryCount = 0;
+    private int entryCount = 0;    // no of entry slots ever used
+
+    private int size = 0;
+    private Progress progress = null; // progress of the running building; null if stored executed times are current
+    private Metrics metrics = null;   // counters of bucket moves; null if metrics are off
+
+    public BucketQueue() {
+        this(MinHeap.DEFAULT_CAPACITY);
+    }
+
+    // initial capacity is a hint of the expected no of buildings; queue grows beyond it on demand
+    public BucketQueue(int initialCapacity) {
+        if (initialCapacity < 1) throw new IllegalArgumentException("capacity must be positive: " + initialCapacity);
+        entrySlots = new PositionMap(initialCapacity);
+        executedTimes = new int[initialCapacity];
+        totalTimes = new int[initialCapacity];
+        freeEntries = new int[initialCapacity];
+    }
+
+    @Override
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int buildingNo) {
+        return entrySlots.containsKey(buildingNo);
+    }
+
+    @Override
+    public void add(Building value) {
+        add(value.getBuildingNo(), value.getExecutedTime(), value.getTotalTime());
+    }
+
+    @Override
+    public void add(int buildingNo, int executedTime, int totalTime) {
+        if (contains(buildingNo)) throw new IllegalArgumentException("building " + buildingNo + " already in queue");
+        if (executedTime < 0) throw new IllegalArgumentException("executed time must not be negative: " + executedTime);
+        int entry = allocateEntry();
+        executedTimes[entry] = executedTime;
+        totalTimes[entry] = totalTime;
+        entrySlots.put(buildingNo, entry);
+        insert(executedTime, buildingNo);
+        size += 1;
+    }
+
+    // buckets are independent, so a batch costs the same as adding one building at a time. The batch is validated
+    // first, so a batch with a building no already in queue or repeated in the batch, or a negative executed time,
+    // throws and leaves the queue unchanged
+    @Override
+    public void addAll(Collection<Building> values) {
+        int[] buildingNos = new int[values.size()];
+        int count = 0;
+        for (Building value : values) {
+            if (contains(value.getBuildingNo()))
+                throw new IllegalArgumentException("building " + value.getBuildingNo() + " already in queue");
+            if (value.getExecutedTime() < 0)
+                throw new IllegalArgumentException("executed time must not be negative: " + value.getExecutedTime());
+            buildingNos[count++] = value.getBuildingNo();
+        }
+        Arrays.sort(buildingNos, 0, count);
+        for (int i = 1; i < count; i++) {
+            if (buildingNos[i] == buildingNos[i - 1])
+                throw new IllegalArgumentException("building " + buildingNos[i] + " repeated in batch");
+        }
+        for (Building value : values)
+            add(value);
+    }
+
+    @Override
+    public int remove() {
+        int result = peekBuildingNo();
+        remove(result);
+        return result;
+    }
+
+    @Override
+    public boolean remove(int buildingNo) {
+        int entry = entrySlots.get(buildingNo);
+        if (entry < 0) return false;
+        delete(executedTimes[entry], buildingNo);
+        entrySlots.remove(buildingNo);
+        freeEntries[freeEntryCount++] = entry;
+        size -= 1;
+        return true;
+    }
+
+    @Override
+    public int getExecutedTime(int buildingNo) {
+        int executedTime = executedTimes[entryOf(buildingNo)];
+        return progress == null ? executedTime : progress.executedTime(buildingNo, executedTime);
+    }
+
+    // move building to the bucket of its new executed time
+    @Override
+    public void increaseKey(int buildingNo, int delta) {
+        if (delta < 0) throw new IllegalArgumentException("delta must not be negative: " + delta);
+        if (delta == 0) return;
+        int entry = entryOf(buildingNo);
+        int executedTime = executedTimes[entry];
+        delete(executedTime, buildingNo);
+        insert(executedTime + delta, buildingNo);
+        if (metrics != null) metrics.bucketMoves++;
+        executedTimes[entry] = executedTime + delta;
+    }
+
+    @Override
+    public int peekBuildingNo() {
+        if (this.isEmpty()) throw new IllegalStateException();
+        return buckets[bucketHeap[0]][0];
+    }
+
+    @Override
+    public int peekExecutedTime() {
+        int buildingNo = peekBuildingNo();
+        int executedTime = bucketTimes[bucketHeap[0]];
+        return progress == null ? executedTime : progress.executedTime(buildingNo, executedTime);
+    }
+
+    @Override
+    public int peekTotalTime() {
+        return totalTimes[entryOf(peekBuildingNo())];
+    }
+
+    // visit buildings in the order of executed time and then building no
+    @Override
+    public void forEach(BuildingVisitor visitor) throws IOException {
+        int bucketsInUse = bucketCount - freeBucketCount; // non empty buckets are the first ones of the heap
+        long[] order = new long[bucketsInUse];
+        for (int i = 0; i < bucketsInUse; i++)
+            order[i] = (long) bucketTimes[bucketHeap[i]] << 32 | bucketHeap[i];
+        Arrays.sort(order);
+        for (long bucketOrder : order) {
+            int slot = (int) bucketOrder;
+            int[] bucket = buckets[slot];
+            for (int i = 0; i < bucketSizes[slot]; i++)
+                visitor.visit(bucket[i], bucketTimes[slot], totalTimes[entryOf(bucket[i])]);
+        }
+    }
+
+    // entry slot of building with the given building no
+    private int entryOf(int buildingNo) {
+        int entry = entrySlots.get(buildingNo);
+        if (entry < 0) throw new IllegalArgumentException("building " + buildingNo + " not in queue");
+        return entry;
+    }
+
+    private int allocateEntry() {
+        if (freeEntryCount > 0)
+            return freeEntries[--freeEntryCount];
+        if (entryCount == executedTimes.length) {
+            int length = entryCount * 2;
+            executedTimes = Arrays.copyOf(executedTimes, length);
+            totalTimes = Arrays.copyOf(totalTimes, length);
+            freeEntries = Arrays.copyOf(freeEntries, length);
+        }
+        return entryCount++;
+    }
+
+    // insert building no to the bucket of executed time keeping the bucket sorted
+    private void insert(int executedTime, int buildingNo) {
+        int slot = bucketSlots.get(executedTime);
+        if (slot < 0) {
+            slot = allocateBucket(executedTime);
+        } else if (bucketSizes[slot] == buckets[slot].length) {
+            buckets[slot] = Arrays.copyOf(buckets[slot], bucketSizes[slot] * 2);
+        }
+        int[] bucket = buckets[slot];
+        int bucketSize = bucketSizes[slot];
+        int index = -(Arrays.binarySearch(bucket, 0, bucketSize, buildingNo) + 1);
+        System.arraycopy(bucket, index, bucket, index + 1, bucketSize - index);
+        bucket[index] = buildingNo;
+        bucketSizes[slot] = bucketSize + 1;
+    }
+
+    // delete building no from the bucket of executed time; releases the bucket when it becomes empty
+    private void delete(int executedTime, int buildingNo) {
+        int slot = bucketSlots.get(executedTime);
+        int[] bucket = buckets[slot];
+        int bucketSize = bucketSizes[slot] - 1;
+        int index = Arrays.binarySearch(bucket, 0, bucketSize + 1, buildingNo);
+        System.arraycopy(bucket, index + 1, bucket, index, bucketSize - index);
+        bucketSizes[slot] = bucketSize;
+        if (bucketSize == 0)
+            releaseBucket(slot);
+    }
+
+    // new empty bucket of executed time in the map and the heap of buckets
+    private int allocateBucket(int executedTime) {
+        int slot;
+        if (freeBucketCount > 0) {
+            slot = freeBuckets[--freeBucketCount];
+        } else {
+            if (bucketCount == buckets.length) {
+                int length = bucketCount * 2;
+                buckets = Arrays.copyOf(buckets, length);
+                bucketSizes = Arrays.copyOf(bucketSizes, length);
+                bucketTimes = Arrays.copyOf(bucketTimes, length);
+                freeBuckets = Arrays.copyOf(freeBuckets, length);
+                bucketHeap = Arrays.copyOf(bucketHeap, length);
+                heapIndexes = Arrays.copyOf(heapIndexes, length);
+            }
+            slot = bucketCount++;
+        }
+        if (buckets[slot] == null)
+            buckets[slot] = new int[MIN_BUCKET_CAPACITY];
+        bucketSizes[slot] = 0;
+        bucketTimes[slot] = executedTime;
+        bucketSlots.put(executedTime, slot);
+        int last = bucketCount - freeBucketCount - 1;
+        bucketHeap[last] = slot;
+        heapIndexes[slot] = last;
+        siftUp(last);
+        return slot;
+    }
+
+    // remove an empty bucket from the map and the heap of buckets; a grown array is released, a small one is kept for
+    // the next bucket in its slot
+    private void releaseBucket(int slot) {
+        bucketSlots.remove(bucketTimes[slot]);
+        if (buckets[slot].length > MIN_BUCKET_CAPACITY)
+            buckets[slot] = null;
+        int index = heapIndexes[slot];
+        int last = bucketCount - freeBucketCount - 1;
+        freeBuckets[freeBucketCount++] = slot;
+        if (index == last) return;
+        bucketHeap[index] = bucketHeap[last];
+        heapIndexes[bucketHeap[index]] = index;
+        siftUp(index);
+        siftDown(index);
+    }
+
+    private void siftUp(int index) {
+        int slot = bucketHeap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (bucketTimes[bucketHeap[parent]] <= bucketTimes[slot]) break;
+            bucketHeap[index] = bucketHeap[parent];
+            heapIndexes[bucketHeap[index]] = index;
+            index = parent;
+        }
+        bucketHeap[index] = slot;
+        heapIndexes[slot] = index;
+    }
+
+    private void siftDown(int index) {
+        int heapSize = bucketCount - freeBucketCount;
+        int slot = bucketHeap[index];
+        while (2 * index + 1 < heapSize) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && bucketTimes[bucketHeap[child + 1]] < bucketTimes[bucketHeap[child]])
+                child++;
+            if (bucketTimes[bucketHeap[child]] >= bucketTimes[slot]) break;
+            bucketHeap[index] = bucketHeap[child];
+            heapIndexes[bucketHeap[index]] = index;
+            index = child;
+        }
+        bucketHeap[index] = slot;
+        heapIndexes[slot] = index;
+    }
+}
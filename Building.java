@@ -1,5 +1,3 @@
-import java.util.Comparator;
-
 /**
  * The Building class stores building metadata and implements Comparable interface
  */
@@ -14,6 +12,12 @@ public class Building implements Comparable<Building> {
         this.totalTime = totalTime;
     }
 
+    public Building(int buildingNo, int executedTime, int totalTime) {
+        this.buildingNo = buildingNo;
+        this.executedTime = executedTime;
+        this.totalTime = totalTime;
+    }
+
     //copy constructor to maintain object integrity while swapping
     public Building (Building building) {
         this.buildingNo = building.buildingNo;
@@ -45,8 +49,8 @@ public class Building implements Comparable<Building> {
     //compare objects on executed time and then on building no while executing min heap operations
     @Override
     public int compareTo(Building o) {
-        return Comparator.comparingInt(Building::getExecutedTime)
-                .thenComparingInt(Building::getBuildingNo)
-                .compare(this, o);
+        int cmp = Integer.compare(executedTime, o.executedTime);
+        if (cmp != 0) return cmp;
+        return Integer.compare(buildingNo, o.buildingNo);
     }
 }
@@ -0,0 +1,20 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a building completing construction
+ */
+@Name("risingCity.BuildingCompleted")
+@Label("Building Completed")
+@Category("Rising City")
+@Description("A building completed construction")
+public class BuildingCompletedEvent extends jdk.jfr.Event {
+    @Label("Building No")
+    public int buildingNo;
+
+    @Label("Completion Time")
+    @Description("Global time in days at which the building completed")
+    public int completionTime;
+}
@@ -0,0 +1,58 @@
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Priority queue of buildings under construction ordered on executed time and then on building no, which decides
+ * the building to be executed next. The building no is a stable handle to update or remove an entry.
+ */
+public interface BuildingQueue {
+    // check if queue is empty
+    boolean isEmpty();
+
+    // no of buildings in queue
+    int size();
+
+    // check if building with the given building no is in queue
+    boolean contains(int buildingNo);
+
+    // insert building to queue
+    void add(Building value);
+
+    // insert building with the given metadata to queue
+    void add(int buildingNo, int executedTime, int totalTime);
+
+    // insert a batch of buildings; all or nothing: a batch with a building no already in queue or repeated in the
+    // batch throws IllegalArgumentException and leaves the queue unchanged
+    void addAll(Collection<Building> values);
+
+    // remove the min element from queue and return its building no
+    int remove();
+
+    // remove building with the given building no from queue; returns false if it is not in queue
+    boolean remove(int buildingNo);
+
+    // get executed time of building with the given building no as known to the queue
+    int getExecutedTime(int buildingNo);
+
+    // add delta to executed time of building with the given building no and restore its position
+    void increaseKey(int buildingNo, int delta);
+
+    // visit every building in queue in no particular order with its executed time as stored in the queue
+    void forEach(BuildingVisitor visitor) throws IOException;
+
+    // get building no of min element from queue
+    int peekBuildingNo();
+
+    // get executed time of min element from queue
+    int peekExecutedTime();
+
+    // get total time of min element from queue
+    int peekTotalTime();
+
+    // report the executed time of the running building from progress; the ordering keeps the executed time at the
+    // start of its run until increaseKey is called with the days it ran
+    void setProgress(Progress progress);
+
+    // count the moves of buildings within the queue into metrics; null turns metrics off
+    void setMetrics(Metrics metrics);
+}
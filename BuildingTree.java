@@ -0,0 +1,66 @@
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Ordered map from building no to building metadata which backs the PrintBuilding instructions. Buildings are
+ * passed by value, so implementations are free to store them as objects or inline in primitive arrays.
+ */
+public interface BuildingTree {
+    // check if tree is empty
+    boolean isEmpty();
+
+    // no of buildings in tree
+    int size();
+
+    // check if tree contains building with building no: key
+    boolean contains(int key);
+
+    // executed time of building with building no: key; -1 if no such building
+    int getExecutedTime(int key);
+
+    // total time of building with building no: key; -1 if no such building
+    int getTotalTime(int key);
+
+    // insert building with building no as key; updates building if key already exists
+    void put(int key, int executedTime, int totalTime);
+
+    // insert buildings sorted on building no in a single batch; updates buildings whose key already exists
+    void putAllSorted(List<Building> buildings);
+
+    // update executed time of an existing building; with progress set, the executed time at the end of its last run
+    void setExecutedTime(int key, int executedTime);
+
+    // delete building with specified key i.e building no; returns false if the building is not present
+    boolean delete(int key);
+
+    // no of buildings with building no lesser than key
+    int rank(int key);
+
+    // building no with the given rank i.e the building no which has rank smaller building nos
+    int select(int rank);
+
+    // no of buildings with building no in the range of low and hi
+    int countInRange(int low, int hi);
+
+    // validate the tree invariants after every update when debug is on
+    void setDebug(boolean debug);
+
+    // report the executed time of the running building from progress instead of the stored executed time
+    void setProgress(Progress progress);
+
+    // count rotations, color flips and moves of red links into metrics; null turns metrics off
+    void setMetrics(Metrics metrics);
+
+    // visit buildings with building no in the range of low and hi in ascending order
+    void forEachInRange(int low, int hi, BuildingVisitor visitor) throws IOException;
+
+    // visit buildings in any of count ranges of lows and highs in ascending order in a single walk of the tree; the
+    // ranges must be sorted and disjoint
+    void forEachInRanges(int[] lows, int[] highs, int count, BuildingVisitor visitor) throws IOException;
+
+    // print a particular building
+    void print(int key, OutputWriter out) throws IOException;
+
+    // print all buildings in the range of low and hi
+    void print(int low, int hi, OutputWriter out) throws IOException;
+}
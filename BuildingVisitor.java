@@ -0,0 +1,8 @@
+import java.io.IOException;
+
+/**
+ * Callback which receives the metadata of each building visited by a range scan, in order of building no
+ */
+public interface BuildingVisitor {
+    void visit(int buildingNo, int executedTime, int totalTime) throws IOException;
+}
@@ -0,0 +1,125 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * State of a simulation between two days, from which a simulation resumes as if it had never stopped. The
+ * buildings of the red black tree, the building queue, the pending inserts and the crews are flat int arrays,
+ * which are cheap to copy out of a running simulation. The binary form is a big endian header followed by those
+ * arrays and a CRC32 of everything before it.
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x52434350; // "RCCP"
+    private static final int VERSION = 1;
+    public static final int FIELDS_PER_BUILDING = 3; // building no, executed time, total time
+    public static final int FIELDS_PER_CREW = 4;     // building no, executed time at start, total time, start time
+    public static final int IDLE = -1;               // start time of an idle crew
+
+    long inputSize;        // size of the instruction file, to detect resuming with another file
+    long parserOffset;     // file offset of the instruction after the waiting instruction
+    int parserLine;        // line no of that offset
+    long outputLength;     // no of bytes of output written until the checkpoint
+    int globalTime;
+    boolean hasInstruction; // check if an instruction is waiting for its day
+    int instructionTime;
+    int instructionType;
+    int firstParam;
+    int secondParam;
+    long instructionCount;
+    long completionCount;
+    int finishTime;
+    int[] crews;           // FIELDS_PER_CREW ints per crew
+    int[] pending;         // FIELDS_PER_BUILDING ints per pending insert
+    int[] queue;           // FIELDS_PER_BUILDING ints per building in queue
+    int[] tree;            // FIELDS_PER_BUILDING ints per building in tree, sorted on building no
+
+    // binary form of the checkpoint
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                64 + 4 * (crews.length + pending.length + queue.length + tree.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(inputSize);
+        out.writeLong(parserOffset);
+        out.writeInt(parserLine);
+        out.writeLong(outputLength);
+        out.writeInt(globalTime);
+        out.writeBoolean(hasInstruction);
+        out.writeInt(instructionTime);
+        out.writeInt(instructionType);
+        out.writeInt(firstParam);
+        out.writeInt(secondParam);
+        out.writeLong(instructionCount);
+        out.writeLong(completionCount);
+        out.writeInt(finishTime);
+        writeInts(out, crews);
+        writeInts(out, pending);
+        writeInts(out, queue);
+        writeInts(out, tree);
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // read and validate the checkpoint file at path
+    public static Checkpoint read(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < 16)
+            throw new IOException("checkpoint too short: " + path);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong())
+            throw new IOException("checkpoint checksum mismatch: " + path);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+        if (in.readInt() != MAGIC)
+            throw new IOException("not a checkpoint: " + path);
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("unsupported checkpoint version " + version + ": " + path);
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.inputSize = in.readLong();
+        checkpoint.parserOffset = in.readLong();
+        checkpoint.parserLine = in.readInt();
+        checkpoint.outputLength = in.readLong();
+        checkpoint.globalTime = in.readInt();
+        checkpoint.hasInstruction = in.readBoolean();
+        checkpoint.instructionTime = in.readInt();
+        checkpoint.instructionType = in.readInt();
+        checkpoint.firstParam = in.readInt();
+        checkpoint.secondParam = in.readInt();
+        checkpoint.instructionCount = in.readLong();
+        checkpoint.completionCount = in.readLong();
+        checkpoint.finishTime = in.readInt();
+        checkpoint.crews = readInts(in);
+        checkpoint.pending = readInts(in);
+        checkpoint.queue = readInts(in);
+        checkpoint.tree = readInts(in);
+        return checkpoint;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values)
+            out.writeInt(value);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available() / 4)
+            throw new IOException("corrupt checkpoint array length: " + length);
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++)
+            values[i] = in.readInt();
+        return values;
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes checkpoints to a file on a background thread so that the simulation only pays for copying its state.
+ * Every checkpoint is written to a temporary file, forced to disk and atomically renamed over the previous one,
+ * so the file always holds a complete checkpoint. At most one checkpoint is in flight; a new one waits for it.
+ */
+public class CheckpointWriter implements Closeable {
+    private final Path path;
+    private final Path temporary;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> inFlight = null;
+
+    public CheckpointWriter(Path path) {
+        this.path = path;
+        this.temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    // write checkpoint in the background; the checkpoint must not be changed afterwards
+    public void write(Checkpoint checkpoint) throws IOException {
+        await();
+        inFlight = executor.submit(() -> {
+            byte[] bytes = checkpoint.toBytes();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return null;
+        });
+    }
+
+    // wait for the checkpoint in flight and rethrow its failure
+    public void await() throws IOException {
+        if (inFlight == null)
+            return;
+        try {
+            inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing checkpoint", e);
+        } catch (ExecutionException e) {
+            throw new IOException("failed to write checkpoint " + path, e.getCause());
+        } finally {
+            inFlight = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            await();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,527 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jdk.jfr.EventType;
+
+/**
+ * Simulation of the construction of one city. All state lives in the instance: the red black tree and heap are
+ * owned by the simulation and output goes to the writer passed to run, so any no of cities can be simulated side by
+ * side in one process. A simulation runs once.
+ *
+ * A city has k crews which construct the k smallest buildings at the same time. Every crew takes the min building
+ * out of the heap and works on it for a slot of 5 days or until it completes, and then puts it back with its new
+ * executed time. Buildings completed on the same day are output in the order of building no. With one crew this is
+ * the original single building schedule.
+ *
+ * A simulation can write a checkpoint every n instructions and a new simulation can resume from it. Taking a
+ * checkpoint copies the buildings into int arrays; encoding and writing them happens on a background thread.
+ *
+ * With a PersistentRedBlackTree the simulation publishes snapshots of the buildings at the end of a day which
+ * other threads can read while it runs; see getSnapshot.
+ */
+public class CitySimulation {
+    private static final EventType RANGE_QUERY_EVENT = EventType.getEventType(RangeQueryEvent.class);
+
+    private final BuildingTree redBlackTree;
+    private final BuildingQueue minHeap;
+    private final List<Building> inventory; // buildings under construction when the simulation starts
+    // executed time of the running building is derived from the day it started running, so heap and red black
+    // tree are only written when it stops running
+    private final Progress progress;
+    private final Building[] crews; // copy of the building every crew is executing as of its start; null if idle
+    private final int[] completedBuildingNos; // buildings completed on the current day
+    private final QueryBatch queryBatch = new QueryBatch(); // print instructions of the current day to be answered
+    private final PersistentRedBlackTree snapshots; // tree publishing snapshots; null if the tree cannot
+    private int busyCrews = 0;
+    private boolean started = false;
+    private Metrics metrics = null; // counters of the run; null if metrics are off
+    private CheckpointWriter checkpointWriter = null; // writer of periodic checkpoints; null if checkpoints are off
+    private long checkpointInterval = 0; // no of instructions between checkpoints
+    private Checkpoint resumeFrom = null; // checkpoint to continue from; null to start from the inventory
+    private long outputBase = 0;         // no of bytes of output written before resuming
+
+    // statistics of the run
+    private long instructionCount = 0; // no of instructions executed
+    private long completionCount = 0;  // no of buildings completed
+    private long skippedInsertCount = 0; // no of inserts skipped since their building no already existed
+    private int finishTime = 0;        // global time at which the last building completed
+
+    public CitySimulation(BuildingTree redBlackTree, BuildingQueue minHeap, List<Building> inventory) {
+        this(redBlackTree, minHeap, inventory, 1);
+    }
+
+    public CitySimulation(BuildingTree redBlackTree, BuildingQueue minHeap, List<Building> inventory,
+                          int crewCount) {
+        this.progress = new Progress(crewCount);
+        this.crews = new Building[crewCount];
+        this.completedBuildingNos = new int[crewCount];
+        this.redBlackTree = redBlackTree;
+        this.minHeap = minHeap;
+        this.inventory = inventory;
+        this.snapshots = redBlackTree instanceof PersistentRedBlackTree ? (PersistentRedBlackTree) redBlackTree
+                : null;
+        minHeap.setProgress(progress);
+        redBlackTree.setProgress(progress);
+    }
+
+    // count the hot paths of the simulation, its red black tree and heap into metrics; null turns metrics off
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        redBlackTree.setMetrics(metrics);
+        minHeap.setMetrics(metrics);
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    // check if the simulation publishes snapshots, i.e. it has a PersistentRedBlackTree
+    public boolean publishesSnapshots() {
+        return snapshots != null;
+    }
+
+    // latest snapshot of the buildings, which may be read from any thread while the simulation runs; null unless
+    // the simulation publishes snapshots and has loaded its inventory or checkpoint
+    public PersistentRedBlackTree.Snapshot getSnapshot() {
+        return snapshots == null ? null : snapshots.getSnapshot();
+    }
+
+    // write a checkpoint to path after every interval no of instructions
+    public void setCheckpoint(Path path, long interval) {
+        if (interval < 1) throw new IllegalArgumentException("checkpoint interval must be positive: " + interval);
+        checkpointWriter = new CheckpointWriter(path);
+        checkpointInterval = interval;
+    }
+
+    // continue from checkpoint instead of starting from the inventory
+    public void resume(Checkpoint checkpoint) {
+        if (checkpoint.crews.length != crews.length * Checkpoint.FIELDS_PER_CREW)
+            throw new IllegalArgumentException("checkpoint has " + checkpoint.crews.length / Checkpoint.FIELDS_PER_CREW
+                    + " crews, simulation has " + crews.length);
+        resumeFrom = checkpoint;
+    }
+
+    // simulate the instruction file at input, text or compiled, and write the output file at output; when resuming,
+    // the output file must hold the output written until the checkpoint
+    public void run(Path input, Path output, int flushPolicy) throws IOException {
+        InstructionSource parser = resumeFrom == null ? InstructionSource.open(input)
+                : InstructionSource.open(input, resumeFrom.parserOffset, resumeFrom.parserLine);
+        try (parser) {
+            run(parser, output, flushPolicy);
+        }
+    }
+
+    // simulate the instructions of source, such as a cursor of an instruction store, and write the output file at
+    // output; when resuming, source must be at the offset of the checkpoint
+    public void run(InstructionSource source, Path output, int flushPolicy) throws IOException {
+        try (OutputWriter out = new OutputWriter(openOutput(output), flushPolicy, OutputWriter.DEFAULT_BUFFER_SIZE)) {
+            if (resumeFrom != null && resumeFrom.inputSize != source.getFileSize())
+                throw new IllegalArgumentException("checkpoint was taken on another instruction file");
+            out.setMetrics(metrics);
+            run(source, out);
+        }
+    }
+
+    // open output file; when resuming, cut it to the output written until the checkpoint and append to it
+    private FileChannel openOutput(Path output) throws IOException {
+        if (resumeFrom == null)
+            return FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE);
+        if (channel.size() < resumeFrom.outputLength) {
+            channel.close();
+            throw new IOException("output file " + output + " is shorter than the output of the checkpoint");
+        }
+        channel.truncate(resumeFrom.outputLength);
+        channel.position(resumeFrom.outputLength);
+        outputBase = resumeFrom.outputLength;
+        return channel;
+    }
+
+    // execute instructions as they are parsed until instructions are finished and all buildings are constructed
+    public void run(InstructionSource parser, OutputWriter out) throws IOException {
+        if (started) throw new IllegalStateException("simulation already ran");
+        started = true;
+        long startNanos = metrics == null ? 0 : System.nanoTime();
+        try {
+            simulate(parser, out);
+        } finally {
+            if (checkpointWriter != null)
+                checkpointWriter.close();
+        }
+        if (metrics != null) {
+            metrics.instructions += instructionCount;
+            metrics.completions += completionCount;
+            metrics.skippedInserts += skippedInsertCount;
+            metrics.totalNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    private void simulate(InstructionSource parser, OutputWriter out) throws IOException {
+        // initialize global timer
+        int globalTime = 0;
+        Instruction parsed = new Instruction(); // every instruction is parsed into the same object
+        Instruction instruction = null;     // next instruction to be executed when matches global time
+        // maintain list of pending inserts to heap until a crew switches buildings
+        List<Building> pendingHeapInserts = new ArrayList<>();
+        if (resumeFrom == null) {
+            // initialize heap; warm start from inventory in linear time
+            redBlackTree.putAllSorted(inventory);
+            minHeap.addAll(inventory);
+        } else {
+            globalTime = restore(resumeFrom, pendingHeapInserts);
+            if (resumeFrom.hasInstruction) {
+                parsed.setTime(resumeFrom.instructionTime);
+                parsed.setType(resumeFrom.instructionType);
+                parsed.setFirstParam(resumeFrom.firstParam);
+                parsed.setSecondParam(resumeFrom.secondParam);
+                instruction = parsed;
+            }
+        }
+        if (snapshots != null) {
+            progress.setTime(globalTime);
+            snapshots.publish(); // readers see the inventory or the restored city until the first request is served
+        }
+        long nextCheckpoint = instructionCount + checkpointInterval;
+        // loop until instructions are finished, heap is empty and every crew is idle
+        while (parser.hasNext() || !minHeap.isEmpty() || busyCrews > 0) {
+            progress.setTime(globalTime);
+            if (metrics != null) metrics.events++;
+            if (instruction == null && next(parser, parsed))
+                instruction = parsed;
+            while (instruction != null) {
+                // perform instruction only when it matches global timer
+                if (globalTime == instruction.getTime()) {
+                    instructionCount++;
+                    int type = instruction.getType();
+                    // answer the prints batched so far before the tree changes or other output is written
+                    if (type != risingCity.CMD_PRINT && type != risingCity.CMD_PRINT_RAN && !queryBatch.isEmpty())
+                        runQueries(out);
+                    switch (type) {
+                        // insert to red black tree and track pending inserts to heap
+                        case risingCity.CMD_INSERT:
+                            // a building no which is still under construction can't be inserted again; skip it and
+                            // leave it to the caller to report skipped inserts
+                            if (redBlackTree.contains(instruction.getFirstParam())) {
+                                skippedInsertCount++;
+                                break;
+                            }
+                            Building building = new Building(instruction.getFirstParam(), instruction.getSecondParam());
+                            redBlackTree.put(building.getBuildingNo(), 0, building.getTotalTime());
+                            pendingHeapInserts.add(building);
+                            break;
+                        // prints a particular building with associated building no or the building nos in the given
+                        // range; batched with the following prints of the day
+                        case risingCity.CMD_PRINT:
+                        case risingCity.CMD_PRINT_RAN:
+                            queryBatch.add(type, instruction.getFirstParam(), instruction.getSecondParam());
+                            break;
+                        // prints no of buildings in the given range
+                        case risingCity.CMD_COUNT:
+                            RangeQueryEvent countEvent = RANGE_QUERY_EVENT.isEnabled() ? new RangeQueryEvent() : null;
+                            if (countEvent != null)
+                                countEvent.begin();
+                            int count = redBlackTree.countInRange(instruction.getFirstParam(),
+                                    instruction.getSecondParam());
+                            out.writeInt(count);
+                            out.newLine();
+                            if (countEvent != null)
+                                commit(countEvent, instruction, count);
+                            break;
+                        // prints no of buildings with a smaller building no; a single descent of the tree, so no
+                        // range query event is recorded for it or for SelectBuilding
+                        case risingCity.CMD_RANK:
+                            out.writeInt(redBlackTree.rank(instruction.getFirstParam()));
+                            out.newLine();
+                            break;
+                        // prints the building with the k-th smallest building no; (0,0,0) if there is no such building
+                        case risingCity.CMD_SELECT:
+                            int k = instruction.getFirstParam();
+                            if (k >= 1 && k <= redBlackTree.size())
+                                redBlackTree.print(redBlackTree.select(k - 1), out);
+                            else {
+                                out.writeBuilding(0, 0, 0);
+                                out.newLine();
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    instruction = next(parser, parsed) ? parsed : null; // iterate through instructions
+                } else
+                    break;
+            }
+            if (!queryBatch.isEmpty())
+                runQueries(out);
+            boolean switching = false; // check if a crew is free to take the next building
+            int completed = 0;
+            for (int crew = 0; crew < crews.length; crew++) {
+                Building currentBuilding = crews[crew];
+                if (currentBuilding == null) {
+                    switching = true;
+                    continue;
+                }
+                // days the building of crew has been executed in this slot
+                int buildTimer = progress.daysRun(crew);
+                // check if building has completed execution; delete from red black tree
+                if (currentBuilding.getExecutedTime() + buildTimer == currentBuilding.getTotalTime()) {
+                    progress.stop(crew);
+                    completedBuildingNos[completed++] = currentBuilding.getBuildingNo();
+                    redBlackTree.delete(currentBuilding.getBuildingNo());
+                    crews[crew] = null;
+                    busyCrews--;
+                    switching = true;
+                } else if (buildTimer % 5 == 0) { // check if building has been executed for 5 days
+                    // write the days building was executed in this slot to red black tree and put it back to heap
+                    progress.stop(crew);
+                    int executedTime = currentBuilding.getExecutedTime() + buildTimer;
+                    redBlackTree.setExecutedTime(currentBuilding.getBuildingNo(), executedTime);
+                    minHeap.add(currentBuilding.getBuildingNo(), executedTime, currentBuilding.getTotalTime());
+                    crews[crew] = null;
+                    busyCrews--;
+                    switching = true;
+                }
+            }
+            // output tuples of buildings completed today in the order of building no
+            Arrays.sort(completedBuildingNos, 0, completed);
+            for (int i = 0; i < completed; i++) {
+                out.writeCompletion(completedBuildingNos[i], globalTime);
+                out.newLine();
+                BuildingCompletedEvent event = new BuildingCompletedEvent();
+                if (event.shouldCommit()) {
+                    event.buildingNo = completedBuildingNos[i];
+                    event.completionTime = globalTime;
+                    event.commit();
+                }
+            }
+            completionCount += completed;
+            if (completed > 0) {
+                if (metrics != null) {
+                    for (int i = 0; i < completed; i++)
+                        metrics.daysBetweenCompletions.record(i == 0 ? globalTime - finishTime : 0);
+                }
+                finishTime = globalTime;
+            }
+            if (switching) {
+                if (metrics != null && !pendingHeapInserts.isEmpty())
+                    metrics.pendingInsertBatches.record(pendingHeapInserts.size());
+                minHeap.addAll(pendingHeapInserts); // flush pending inserts to heap
+                pendingHeapInserts.clear(); // reset pending heap inserts
+                // idle crews take the next buildings to be executed from heap
+                for (int crew = 0; crew < crews.length && !minHeap.isEmpty(); crew++) {
+                    if (crews[crew] == null)
+                        crews[crew] = start(crew);
+                }
+            }
+            if (snapshots != null)
+                snapshots.publishIfRequested();
+            // jump over the days in which nothing but progress on the current buildings happens
+            globalTime = nextEventTime(instruction, globalTime);
+            if (checkpointWriter != null && instructionCount >= nextCheckpoint) {
+                checkpointWriter.write(checkpoint(parser, out, globalTime, instruction, pendingHeapInserts));
+                nextCheckpoint = instructionCount + checkpointInterval;
+            }
+        }
+        if (snapshots != null)
+            snapshots.publish(); // readers see the finished city
+    }
+
+    // copy the state of the simulation before the day of global time into a checkpoint
+    private Checkpoint checkpoint(InstructionSource parser, OutputWriter out, int globalTime, Instruction instruction,
+                                  List<Building> pendingHeapInserts) throws IOException {
+        out.flush(); // the checkpoint covers the output until now
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.inputSize = parser.getFileSize();
+        checkpoint.parserOffset = parser.getOffset();
+        checkpoint.parserLine = parser.getLine();
+        checkpoint.outputLength = outputBase + out.getBytesWritten();
+        checkpoint.globalTime = globalTime;
+        checkpoint.hasInstruction = instruction != null;
+        if (instruction != null) {
+            checkpoint.instructionTime = instruction.getTime();
+            checkpoint.instructionType = instruction.getType();
+            checkpoint.firstParam = instruction.getFirstParam();
+            checkpoint.secondParam = instruction.getSecondParam();
+        }
+        checkpoint.instructionCount = instructionCount;
+        checkpoint.completionCount = completionCount;
+        checkpoint.finishTime = finishTime;
+        checkpoint.crews = new int[crews.length * Checkpoint.FIELDS_PER_CREW];
+        for (int crew = 0, i = 0; crew < crews.length; crew++, i += Checkpoint.FIELDS_PER_CREW) {
+            Building building = crews[crew];
+            checkpoint.crews[i + 3] = Checkpoint.IDLE;
+            if (building != null) {
+                checkpoint.crews[i] = building.getBuildingNo();
+                checkpoint.crews[i + 1] = building.getExecutedTime();
+                checkpoint.crews[i + 2] = building.getTotalTime();
+                checkpoint.crews[i + 3] = progress.getStartTime(crew);
+            }
+        }
+        BuildingArray pending = new BuildingArray(pendingHeapInserts.size());
+        for (Building building : pendingHeapInserts)
+            pending.visit(building.getBuildingNo(), building.getExecutedTime(), building.getTotalTime());
+        checkpoint.pending = pending.values;
+        BuildingArray queue = new BuildingArray(minHeap.size());
+        minHeap.forEach(queue);
+        checkpoint.queue = queue.values;
+        BuildingArray tree = new BuildingArray(redBlackTree.size());
+        redBlackTree.forEachInRange(Integer.MIN_VALUE, Integer.MAX_VALUE, tree);
+        checkpoint.tree = tree.values;
+        return checkpoint;
+    }
+
+    // restore the state of checkpoint and return its global time
+    private int restore(Checkpoint checkpoint, List<Building> pendingHeapInserts) {
+        redBlackTree.putAllSorted(buildings(checkpoint.tree));
+        minHeap.addAll(buildings(checkpoint.queue));
+        pendingHeapInserts.addAll(buildings(checkpoint.pending));
+        for (int crew = 0, i = 0; crew < crews.length; crew++, i += Checkpoint.FIELDS_PER_CREW) {
+            if (checkpoint.crews[i + 3] == Checkpoint.IDLE)
+                continue;
+            Building building = new Building(checkpoint.crews[i], checkpoint.crews[i + 1], checkpoint.crews[i + 2]);
+            crews[crew] = building;
+            progress.start(crew, building.getBuildingNo(), checkpoint.crews[i + 3]);
+            busyCrews++;
+            // the tree stores the executed time of a running building as of its start
+            redBlackTree.setExecutedTime(building.getBuildingNo(), building.getExecutedTime());
+        }
+        instructionCount = checkpoint.instructionCount;
+        completionCount = checkpoint.completionCount;
+        finishTime = checkpoint.finishTime;
+        return checkpoint.globalTime;
+    }
+
+    // buildings of an int array of a checkpoint
+    private static List<Building> buildings(int[] values) {
+        List<Building> buildings = new ArrayList<>(values.length / Checkpoint.FIELDS_PER_BUILDING);
+        for (int i = 0; i < values.length; i += Checkpoint.FIELDS_PER_BUILDING)
+            buildings.add(new Building(values[i], values[i + 1], values[i + 2]));
+        return buildings;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public long getCompletionCount() {
+        return completionCount;
+    }
+
+    // no of inserts of a building no which already existed, skipped in this run; not kept in checkpoints
+    public long getSkippedInsertCount() {
+        return skippedInsertCount;
+    }
+
+    public int getFinishTime() {
+        return finishTime;
+    }
+
+    // take the building at the top of the heap out of heap to be run by crew and return a copy of it
+    private Building start(int crew) {
+        Building building = new Building(minHeap.peekBuildingNo(), minHeap.peekExecutedTime(),
+                minHeap.peekTotalTime());
+        minHeap.remove();
+        progress.start(crew, building.getBuildingNo());
+        busyCrews++;
+        if (metrics != null) metrics.slotSwitches++;
+        SlotSwitchEvent event = new SlotSwitchEvent();
+        if (event.shouldCommit()) {
+            event.crew = crew;
+            event.buildingNo = building.getBuildingNo();
+            event.executedTime = building.getExecutedTime();
+            event.globalTime = progress.getTime();
+            event.commit();
+        }
+        return building;
+    }
+
+    // parse the next instruction; the time it takes is counted as parse time
+    private boolean next(InstructionSource parser, Instruction parsed) throws IOException {
+        if (metrics == null)
+            return parser.next(parsed);
+        long start = System.nanoTime();
+        boolean parsedNext = parser.next(parsed);
+        metrics.parseNanos += System.nanoTime() - start;
+        return parsedNext;
+    }
+
+    // collects the visited buildings into an int array of a checkpoint
+    private static class BuildingArray implements BuildingVisitor {
+        private final int[] values;
+        private int length = 0;
+
+        BuildingArray(int buildings) {
+            values = new int[buildings * Checkpoint.FIELDS_PER_BUILDING];
+        }
+
+        @Override
+        public void visit(int buildingNo, int executedTime, int totalTime) {
+            values[length++] = buildingNo;
+            values[length++] = executedTime;
+            values[length++] = totalTime;
+        }
+    }
+
+    // answer the batched print instructions in a single walk of the tree
+    private void runQueries(OutputWriter out) throws IOException {
+        if (metrics != null)
+            metrics.queryBatches.record(queryBatch.size());
+        RangeQueryEvent event = RANGE_QUERY_EVENT.isEnabled() ? new RangeQueryEvent() : null;
+        if (event != null)
+            event.begin();
+        queryBatch.run(redBlackTree, out);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.low = queryBatch.getLow();
+                event.high = queryBatch.getHigh();
+                event.buildings = queryBatch.getBuildings();
+                event.queries = queryBatch.size();
+                event.commit();
+            }
+        }
+        queryBatch.clear();
+    }
+
+    // commit flight recorder event of the range query of instruction which counted the given no of buildings if it is
+    // recorded
+    private void commit(RangeQueryEvent event, Instruction instruction, int buildings) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.low = instruction.getFirstParam();
+            event.high = instruction.getSecondParam();
+            event.buildings = buildings;
+            event.queries = 1;
+            event.commit();
+        }
+    }
+
+    // global time after the current one at which the next instruction is due, the slot of a crew ends or the
+    // building of a crew completes
+    private int nextEventTime(Instruction instruction, int globalTime) {
+        int next = globalTime + 1;
+        if (busyCrews > 0) {
+            next = Integer.MAX_VALUE;
+            for (int crew = 0; crew < crews.length; crew++) {
+                Building currentBuilding = crews[crew];
+                if (currentBuilding == null)
+                    continue;
+                next = Math.min(next, progress.getStartTime(crew) + 5); // the 5 day slot ends
+                int completion = progress.getStartTime(crew) + currentBuilding.getTotalTime()
+                        - currentBuilding.getExecutedTime();
+                if (completion > globalTime)
+                    next = Math.min(next, completion);
+            }
+            if (instruction != null && instruction.getTime() > globalTime)
+                next = Math.min(next, instruction.getTime());
+        } else if (instruction != null && instruction.getTime() > next) {
+            next = instruction.getTime(); // nothing to construct; sleep until the next instruction is due
+        }
+        return next;
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Checks an engine mode against ReferenceSimulation line by line on generated or given instruction files. Exits
+ * with status 1 at the first mismatch and keeps the instruction file of the failing seed for debugging.
+ *
+ * usage: java DifferentialRunner [--seeds=n] [--trace=file] [generator options] [simulation options]
+ * Without --trace, n traces are generated with seeds seed, seed + 1, ... using the options of WorkloadGenerator.
+ * Simulation options are the options of risingCity and select the engine mode under test.
+ */
+public class DifferentialRunner {
+    public static void main(String[] args) {
+        try {
+            SimulationConfig config = new SimulationConfig();
+            WorkloadGenerator generator = new WorkloadGenerator();
+            long seed = 1;
+            int seeds = 1;
+            Path trace = null;
+            for (String arg : args) {
+                if (arg.startsWith("--seeds="))
+                    seeds = Integer.parseInt(arg.substring("--seeds=".length()));
+                else if (arg.startsWith("--seed="))
+                    seed = Long.parseLong(arg.substring("--seed=".length()));
+                else if (arg.startsWith("--trace="))
+                    trace = Paths.get(arg.substring("--trace=".length()));
+                else if (!config.parse(arg) && !generator.parse(arg))
+                    throw new IllegalArgumentException("unknown option: " + arg);
+            }
+            if (trace != null) {
+                if (!check(config, trace))
+                    System.exit(1);
+                return;
+            }
+            for (int i = 0; i < seeds; i++) {
+                Path generated = Files.createTempFile("trace-" + (seed + i) + "-", ".txt");
+                generator.setSeed(seed + i);
+                generator.write(generated);
+                if (!check(config, generated)) {
+                    System.err.println("instruction file kept at " + generated);
+                    System.exit(1);
+                }
+                Files.delete(generated);
+            }
+            System.out.println(seeds + " traces match the reference");
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    // run engine and reference on the instruction file and compare their output; prints the first mismatch
+    private static boolean check(SimulationConfig config, Path input) throws IOException {
+        Path actual = Files.createTempFile("actual-", ".txt");
+        Path expected = Files.createTempFile("expected-", ".txt");
+        try {
+            config.run(input, actual);
+            new ReferenceSimulation(config.getInventory(), config.getCrewCount()).run(input, expected);
+            try (BufferedReader actualReader = Files.newBufferedReader(actual);
+                 BufferedReader expectedReader = Files.newBufferedReader(expected)) {
+                for (long line = 1; ; line++) {
+                    String actualLine = actualReader.readLine();
+                    String expectedLine = expectedReader.readLine();
+                    if (actualLine == null && expectedLine == null)
+                        return true;
+                    if (actualLine == null || !actualLine.equals(expectedLine)) {
+                        System.err.println(input + ": mismatch at output line " + line);
+                        System.err.println("  expected: " + expectedLine);
+                        System.err.println("  actual:   " + actualLine);
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            Files.delete(actual);
+            Files.delete(expected);
+        }
+    }
+}
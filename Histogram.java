@@ -0,0 +1,58 @@
+/**
+ * Histogram of non negative longs in power of two buckets. Recording is a few instructions and never allocates;
+ * percentiles are reported as the upper bound of their bucket, so they are exact within a factor of two.
+ */
+public class Histogram {
+    private final long[] buckets = new long[65]; // bucket i counts the values with i significant bits
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    // record a value; negative values are recorded as 0
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets[64 - Long.numberOfLeadingZeros(value)]++;
+        count++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    // add the values recorded by other
+    public void merge(Histogram other) {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] += other.buckets[i];
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // upper bound of the bucket holding the given fraction of the values, at most max
+    public long percentile(double fraction) {
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, max);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count %d, mean %.1f, p50 <= %d, p90 <= %d, p99 <= %d, max %d",
+                count, getMean(), percentile(0.5), percentile(0.9), percentile(0.99), max);
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles an instruction file from the text format to the binary format read by BinaryInstructionReader, so that
+ * repeated runs of the same file skip parsing. risingCity and the other runners accept either format.
+ *
+ * usage: java InstructionCompiler instruction file compiled file
+ */
+public class InstructionCompiler {
+    public static void main(String[] args) {
+        try {
+            if (args.length != 2)
+                throw new IllegalArgumentException("usage: java InstructionCompiler instruction file compiled file");
+            long records = compile(Paths.get(args[0]), Paths.get(args[1]));
+            System.out.println(records + " instructions compiled to " + args[1]);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // compile the text instruction file at input to output and return the no of instructions
+    public static long compile(Path input, Path output) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryInstructionReader.RECORD_SIZE << 12);
+        CRC32 crc = new CRC32();
+        long records = 0;
+        Instruction instruction = new Instruction();
+        try (InstructionParser parser = new InstructionParser(input);
+             FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(BinaryInstructionReader.HEADER_SIZE); // header is written once the records are known
+            while (parser.next(instruction)) {
+                if (!buffer.hasRemaining())
+                    write(channel, buffer, crc);
+                buffer.putInt(instruction.getTime());
+                buffer.putInt(instruction.getType());
+                buffer.putInt(instruction.getFirstParam());
+                buffer.putInt(instruction.getSecondParam());
+                records++;
+            }
+            write(channel, buffer, crc);
+            buffer.putInt(BinaryInstructionReader.MAGIC);
+            buffer.putInt(BinaryInstructionReader.VERSION);
+            buffer.putInt(BinaryInstructionReader.RECORD_SIZE);
+            buffer.putInt(0);
+            buffer.putLong(records);
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            long position = 0;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+        }
+        return records;
+    }
+
+    // write buffered records to channel and add them to the checksum
+    private static void write(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
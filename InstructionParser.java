@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming parser of the instruction file. The file is memory mapped one window at a time and every line of the
+ * form "time: Insert(a,b)", "time: PrintBuilding(a)", "time: PrintBuilding(a,b)", "time: CountBuildings(a,b)",
+ * "time: RankBuilding(a)" or "time: SelectBuilding(a)" is read byte by byte straight into the int fields of a
+ * reused Instruction, so memory use does not depend on the size of the input.
+ */
+public class InstructionParser implements InstructionSource {
+    private static final long WINDOW_SIZE = 1L << 26; // no of bytes mapped at a time
+    private static final byte[] INSERT = "Insert".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PRINT_BUILDING = "PrintBuilding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COUNT_BUILDINGS = "CountBuildings".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RANK_BUILDING = "RankBuilding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SELECT_BUILDING = "SelectBuilding".getBytes(StandardCharsets.US_ASCII);
+    private static final int EOF = -1;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer buffer;
+    private long windowStart;                   // file offset of the first byte in buffer
+    private final byte[] command = new byte[16]; // command name of the current line
+    private int line = 1;                       // line no of the next byte for error messages
+
+    public InstructionParser(Path path) throws IOException {
+        this(path, 0, 1);
+    }
+
+    // parser continuing at the given file offset, which is the start of the given line no or within it
+    public InstructionParser(Path path, long offset, int line) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        if (offset < 0 || offset > fileSize)
+            throw new IllegalArgumentException("offset " + offset + " out of file of size " + fileSize);
+        this.line = line;
+        map(offset);
+    }
+
+    // file offset of the next byte to be parsed
+    @Override
+    public long getOffset() {
+        return windowStart + buffer.position();
+    }
+
+    // line no of the next byte to be parsed
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    // check if there is another instruction in the file; skips blank lines
+    @Override
+    public boolean hasNext() throws IOException {
+        int b = peek();
+        while (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+            if (b == '\n') line++;
+            skip();
+            b = peek();
+        }
+        return b != EOF;
+    }
+
+    // parse the next instruction into the given instruction; returns false if there are no more instructions
+    @Override
+    public boolean next(Instruction instruction) throws IOException {
+        if (!hasNext()) return false;
+        instruction.setTime(readInt());
+        expect(':');
+        skipSpaces();
+        int length = 0;
+        int b = peek();
+        while ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z')) {
+            if (length < command.length) command[length] = (byte) b;
+            length++;
+            skip();
+            b = peek();
+        }
+        instruction.setType(0);
+        instruction.setFirstParam(0);
+        instruction.setSecondParam(0);
+        if (matches(INSERT, length)) {
+            expect('(');
+            instruction.setType(risingCity.CMD_INSERT);
+            instruction.setFirstParam(readInt());
+            expect(',');
+            instruction.setSecondParam(readInt());
+            expect(')');
+        } else if (matches(PRINT_BUILDING, length)) {
+            expect('(');
+            instruction.setType(risingCity.CMD_PRINT);
+            instruction.setFirstParam(readInt());
+            skipSpaces();
+            if (peek() == ',') {
+                skip();
+                instruction.setType(risingCity.CMD_PRINT_RAN);
+                instruction.setSecondParam(readInt());
+            }
+            expect(')');
+        } else if (matches(COUNT_BUILDINGS, length)) {
+            expect('(');
+            instruction.setType(risingCity.CMD_COUNT);
+            instruction.setFirstParam(readInt());
+            expect(',');
+            instruction.setSecondParam(readInt());
+            expect(')');
+        } else if (matches(RANK_BUILDING, length)) {
+            expect('(');
+            instruction.setType(risingCity.CMD_RANK);
+            instruction.setFirstParam(readInt());
+            expect(')');
+        } else if (matches(SELECT_BUILDING, length)) {
+            expect('(');
+            instruction.setType(risingCity.CMD_SELECT);
+            instruction.setFirstParam(readInt());
+            expect(')');
+        }
+        // ignore anything else up to the end of line, including unknown commands
+        b = peek();
+        while (b != '\n' && b != EOF) {
+            skip();
+            b = peek();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // map the window of the file starting at offset
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+    }
+
+    // next byte without consuming it; EOF at end of file
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining()) {
+            long offset = windowStart + buffer.limit();
+            if (offset >= fileSize) return EOF;
+            map(offset);
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    // consume the byte returned by peek
+    private void skip() {
+        buffer.position(buffer.position() + 1);
+    }
+
+    private void skipSpaces() throws IOException {
+        int b = peek();
+        while (b == ' ' || b == '\t') {
+            skip();
+            b = peek();
+        }
+    }
+
+    // consume the expected character after optional spaces
+    private void expect(char c) throws IOException {
+        skipSpaces();
+        if (peek() != c) throw malformed();
+        skip();
+    }
+
+    // read a decimal int after optional spaces; a number out of the range of int is malformed
+    private int readInt() throws IOException {
+        skipSpaces();
+        boolean negative = peek() == '-';
+        if (negative) skip();
+        int b = peek();
+        if (b < '0' || b > '9') throw malformed();
+        long value = 0;
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        do {
+            value = value * 10 + (b - '0');
+            if (value > limit) throw malformed();
+            skip();
+            b = peek();
+        } while (b >= '0' && b <= '9');
+        return (int) (negative ? -value : value);
+    }
+
+    // check if the command of the current line of given length is the expected name
+    private boolean matches(byte[] name, int length) {
+        if (length != name.length) return false;
+        for (int i = 0; i < length; i++)
+            if (command[i] != name[i]) return false;
+        return true;
+    }
+
+    private IllegalArgumentException malformed() {
+        return new IllegalArgumentException("malformed instruction at line " + line);
+    }
+}
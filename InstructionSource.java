@@ -0,0 +1,48 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequence of instructions read from a file, either the text format or the compiled binary format. Positions are
+ * file offsets, so a simulation can be resumed at the instruction where a checkpoint was taken.
+ */
+public interface InstructionSource extends Closeable {
+    // check if there is another instruction
+    boolean hasNext() throws IOException;
+
+    // read the next instruction into the given instruction; returns false if there are no more instructions
+    boolean next(Instruction instruction) throws IOException;
+
+    // file offset of the next instruction
+    long getOffset();
+
+    // line no of the next instruction in the text format, record no starting at 1 in the binary format
+    int getLine();
+
+    long getFileSize();
+
+    // open the instruction file at path, compiled or text, continuing at the given offset and line no
+    static InstructionSource open(Path path, long offset, int line) throws IOException {
+        if (isCompiled(path))
+            return offset == 0 ? new BinaryInstructionReader(path) : new BinaryInstructionReader(path, offset);
+        return new InstructionParser(path, offset, line);
+    }
+
+    static InstructionSource open(Path path) throws IOException {
+        return open(path, 0, 1);
+    }
+
+    // check if the file at path starts with the magic no of the binary format
+    static boolean isCompiled(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until 4 bytes or end of file
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == BinaryInstructionReader.MAGIC;
+        }
+    }
+}
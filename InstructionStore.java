@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Whole instruction file held in memory for replay and lookahead. Instructions are packed four ints to a record,
+ * time, type, first param and second param as in the compiled format, into fixed size chunks of an int array
+ * each, so a stored instruction costs 16 bytes instead of an Instruction object and its reference in a list.
+ * Chunks are never copied as the store grows. Stored instructions are read through a Cursor, which can peek at
+ * the next instruction without copying it out.
+ */
+public class InstructionStore {
+    private static final int CHUNK_SHIFT = 16;                     // no of records in a chunk is 2^CHUNK_SHIFT
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int RECORD_MASK = CHUNK_RECORDS - 1;
+    private static final int FIELDS = 4;                           // ints in a record
+
+    private int[][] chunks = new int[1][];
+    private long size = 0;
+
+    // read every instruction of the instruction file at path, text or compiled
+    public static InstructionStore load(Path path) throws IOException {
+        InstructionStore store = new InstructionStore();
+        Instruction instruction = new Instruction();
+        try (InstructionSource source = InstructionSource.open(path)) {
+            while (source.next(instruction))
+                store.add(instruction);
+        }
+        return store;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public void add(Instruction instruction) {
+        add(instruction.getTime(), instruction.getType(), instruction.getFirstParam(), instruction.getSecondParam());
+    }
+
+    public void add(int time, int type, int firstParam, int secondParam) {
+        int chunk = (int) (size >>> CHUNK_SHIFT);
+        if (chunk == chunks.length)
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        if (chunks[chunk] == null)
+            chunks[chunk] = new int[CHUNK_RECORDS * FIELDS];
+        int field = ((int) size & RECORD_MASK) * FIELDS;
+        int[] records = chunks[chunk];
+        records[field] = time;
+        records[field + 1] = type;
+        records[field + 2] = firstParam;
+        records[field + 3] = secondParam;
+        size++;
+    }
+
+    public int getTime(long index) {
+        return field(index, 0);
+    }
+
+    public int getType(long index) {
+        return field(index, 1);
+    }
+
+    public int getFirstParam(long index) {
+        return field(index, 2);
+    }
+
+    public int getSecondParam(long index) {
+        return field(index, 3);
+    }
+
+    // cursor at the first instruction
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int field(long index, int field) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("instruction " + index + " out of " + size);
+        return chunks[(int) (index >>> CHUNK_SHIFT)][((int) index & RECORD_MASK) * FIELDS + field];
+    }
+
+    /**
+     * Forward cursor over the stored instructions. It is an instruction source, so a simulation can replay the
+     * store; offsets are instruction indexes instead of file offsets and the file size is the no of instructions.
+     */
+    public class Cursor implements InstructionSource {
+        private long position = 0; // index of the next instruction
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        // time of the next instruction; there must be a next instruction
+        public int peekTime() {
+            return getTime(position);
+        }
+
+        // type of the next instruction; there must be a next instruction
+        public int peekType() {
+            return getType(position);
+        }
+
+        @Override
+        public boolean next(Instruction instruction) {
+            if (position >= size) return false;
+            int[] records = chunks[(int) (position >>> CHUNK_SHIFT)];
+            int field = ((int) position & RECORD_MASK) * FIELDS;
+            instruction.setTime(records[field]);
+            instruction.setType(records[field + 1]);
+            instruction.setFirstParam(records[field + 2]);
+            instruction.setSecondParam(records[field + 3]);
+            position++;
+            return true;
+        }
+
+        // skip the next instruction without reading it
+        public void skip() {
+            if (position < size) position++;
+        }
+
+        // move the cursor to the instruction at index
+        public void seek(long index) {
+            if (index < 0 || index > size)
+                throw new IndexOutOfBoundsException("instruction " + index + " out of " + size);
+            position = index;
+        }
+
+        @Override
+        public long getOffset() {
+            return position;
+        }
+
+        @Override
+        public int getLine() {
+            return (int) position + 1;
+        }
+
+        @Override
+        public long getFileSize() {
+            return size;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
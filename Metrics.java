@@ -0,0 +1,80 @@
+import java.io.PrintStream;
+
+/**
+ * Counters and histograms of the hot paths of one simulation. Components count into a Metrics only when one is
+ * set on them, so with metrics off, which is the default, the cost is a null check per counted operation. A
+ * Metrics belongs to one simulation and is not thread safe; merge the metrics of several simulations to report
+ * them together.
+ */
+public class Metrics {
+    // simulation
+    long instructions = 0;   // instructions executed
+    long events = 0;         // days on which the simulation stopped to execute instructions or switch buildings
+    long completions = 0;    // buildings completed
+    long skippedInserts = 0; // inserts skipped since their building no already existed
+    long slotSwitches = 0;   // buildings taken by a crew from the building queue
+    final Histogram daysBetweenCompletions = new Histogram();
+    final Histogram pendingInsertBatches = new Histogram(); // no of pending inserts flushed to the queue at once
+    final Histogram queryBatches = new Histogram();         // no of print instructions answered by one tree walk
+
+    // building queue
+    long siftUpSteps = 0;    // levels moved up the heap
+    long siftDownSteps = 0;  // levels moved down the heap
+    long bucketMoves = 0;    // buildings moved between buckets of the bucket queue
+
+    // red black tree
+    long rotations = 0;
+    long colorFlips = 0;
+    long moveRedLefts = 0;
+    long moveRedRights = 0;
+
+    // time
+    long parseNanos = 0;     // time spent parsing instructions
+    long outputNanos = 0;    // time spent writing output to its channel
+    long totalNanos = 0;     // time of the whole run
+
+    // add the metrics of other, e.g. of another city
+    public void merge(Metrics other) {
+        instructions += other.instructions;
+        events += other.events;
+        completions += other.completions;
+        skippedInserts += other.skippedInserts;
+        slotSwitches += other.slotSwitches;
+        daysBetweenCompletions.merge(other.daysBetweenCompletions);
+        pendingInsertBatches.merge(other.pendingInsertBatches);
+        queryBatches.merge(other.queryBatches);
+        siftUpSteps += other.siftUpSteps;
+        siftDownSteps += other.siftDownSteps;
+        bucketMoves += other.bucketMoves;
+        rotations += other.rotations;
+        colorFlips += other.colorFlips;
+        moveRedLefts += other.moveRedLefts;
+        moveRedRights += other.moveRedRights;
+        parseNanos += other.parseNanos;
+        outputNanos += other.outputNanos;
+        totalNanos += other.totalNanos;
+    }
+
+    // print the summary of a run
+    public void report(PrintStream out) {
+        long simulationNanos = totalNanos - parseNanos - outputNanos;
+        out.println("instructions:             " + instructions);
+        out.println("events:                   " + events);
+        out.println("completions:              " + completions);
+        out.println("skipped inserts:          " + skippedInserts);
+        out.printf("events per completion:    %.2f%n", completions == 0 ? 0.0 : (double) events / completions);
+        out.println("days between completions: " + daysBetweenCompletions);
+        out.println("slot switches:            " + slotSwitches);
+        out.println("pending insert batches:   " + pendingInsertBatches);
+        out.println("print query batches:      " + queryBatches);
+        out.println("heap sift up steps:       " + siftUpSteps);
+        out.println("heap sift down steps:     " + siftDownSteps);
+        out.println("bucket moves:             " + bucketMoves);
+        out.println("tree rotations:           " + rotations);
+        out.println("tree color flips:         " + colorFlips);
+        out.println("tree moveRedLeft:         " + moveRedLefts);
+        out.println("tree moveRedRight:        " + moveRedRights);
+        out.printf("time:                     %.1f ms parse, %.1f ms simulation, %.1f ms output, %.1f ms total%n",
+                parseNanos / 1e6, simulationNanos / 1e6, outputNanos / 1e6, totalNanos / 1e6);
+    }
+}
@@ -1,54 +1,242 @@
-public class MinHeap {
-    private final Building[] heap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Indexed d-ary min heap of buildings ordered on executed time and then on building no. Buildings are held in
+ * primitive arrays with the ordering packed into a single long key, so heap operations never allocate. The children
+ * of a node are adjacent in the key array, so with an arity of 4 or 8 a sift down reads the whole child set from one
+ * or two cache lines and the heap is half or a third as deep as a binary heap. A position map from building no to
+ * heap slot lets callers use the building no as a stable handle to update or remove an entry. The arrays grow by
+ * half when full and shrink by half when less than a quarter is in use, but never below the initial capacity.
+ *
+ * No arity is fastest at every size: 4, 8 and 16 stay within about 20% of each other and well ahead of 2, with
+ * 8-ary ahead at 64K buildings, and the bucket queue matches or beats them at some sizes. The default of 4 is a
+ * middle choice among them, not the measured optimum; pick the arity with --arity=d after running MinHeapBenchmark
+ * on the target.
+ */
+public class MinHeap implements BuildingQueue {
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final int DEFAULT_ARITY = 4; // within about 20% of the best arity at every size in MinHeapBenchmark
+    public static final int MAX_ARITY = 16;
+
+    private final int initialCapacity;
+    private final int arity; // no of children of every node
+    private long[] keys;      // packed (executed time, building no) ordering keys
+    private int[] totalTimes; // total time of the building at the same index
+    private final PositionMap positions; // heap slot of every building no
     private int size = 0;
+    private Progress progress = null; // progress of the running building; null if stored executed times are current
+    private Metrics metrics = null;   // counters of sift steps; null if metrics are off
+
+    public MinHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // initial capacity is a hint of the expected no of buildings; heap grows beyond it on demand
+    public MinHeap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_ARITY);
+    }
+
+    public MinHeap(int initialCapacity, int arity) {
+        if (initialCapacity < 1) throw new IllegalArgumentException("capacity must be positive: " + initialCapacity);
+        if (arity < 2 || arity > MAX_ARITY) throw new IllegalArgumentException("arity out of range: " + arity);
+        this.initialCapacity = initialCapacity;
+        this.arity = arity;
+        keys = new long[initialCapacity];
+        totalTimes = new int[initialCapacity];
+        positions = new PositionMap(initialCapacity);
+    }
+
+    @Override
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
 
-    public MinHeap(int size) {
-        heap = new Building[size];
+    @Override
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
     }
 
     // insert building to heap
+    @Override
     public void add(Building value) {
-        if (isFull()) throw new IllegalStateException();
-        heap[size] = new Building(value);
+        add(value.getBuildingNo(), value.getExecutedTime(), value.getTotalTime());
+    }
+
+    // insert building with the given metadata to heap
+    @Override
+    public void add(int buildingNo, int executedTime, int totalTime) {
+        if (contains(buildingNo)) throw new IllegalArgumentException("building " + buildingNo + " already in heap");
+        if (size == keys.length) resize(size + (size >> 1) + 1);
+        keys[size] = pack(executedTime, buildingNo);
+        totalTimes[size] = totalTime;
+        positions.put(buildingNo, size);
         size += 1;
-        heapifyUp(); // call heapify up to maintain min heap invariant
+        heapifyUp(size - 1); // call heapify up to maintain min heap invariant
     }
 
-    // remove the min element from heap
-    public Building remove() {
-        Building result = peek();
+    // insert a batch of buildings; rebuilds the heap bottom up when that is cheaper than sifting up each building.
+    // The batch is validated first, so a batch with a building no already in heap or repeated in the batch throws
+    // and leaves the heap unchanged
+    @Override
+    public void addAll(Collection<Building> values) {
+        int count = values.size();
+        if (count == 0) return;
+        for (Building value : values) {
+            if (contains(value.getBuildingNo()))
+                throw new IllegalArgumentException("building " + value.getBuildingNo() + " already in heap");
+        }
+        // claim the positions of the batch; a building no claimed twice is repeated in the batch
+        int claimed = 0;
+        for (Building value : values) {
+            if (positions.containsKey(value.getBuildingNo())) {
+                int buildingNo = value.getBuildingNo();
+                for (Building added : values) {
+                    if (claimed-- == 0) break;
+                    positions.remove(added.getBuildingNo());
+                }
+                throw new IllegalArgumentException("building " + buildingNo + " repeated in batch");
+            }
+            positions.put(value.getBuildingNo(), size + claimed++);
+        }
+        int total = size + count;
+        if (total > keys.length) resize(Math.max(total, keys.length + (keys.length >> 1) + 1));
+        // sifting up costs up to log(total) swaps per building while a rebuild costs at most about 2 * total swaps
+        boolean rebuild = (long) count * (32 - Integer.numberOfLeadingZeros(total)) > 2L * total;
+        for (Building value : values) {
+            keys[size] = pack(value.getExecutedTime(), value.getBuildingNo());
+            totalTimes[size] = value.getTotalTime();
+            size += 1;
+            if (!rebuild) heapifyUp(size - 1);
+        }
+        if (rebuild) {
+            // floyd's method: heapify down every internal node starting from the last one
+            for (int index = parentIndex(size - 1); index >= 0; index--)
+                heapifyDown(index);
+        }
+    }
 
-        // replace the root with the last entry
-        heap[0] = new Building(heap[size - 1]);
-        heap[size - 1] = null;
-        size -= 1;
-        heapifyDown(); // call heapify down to maintain min heap invariant
+    // remove the min element from heap and return its building no
+    @Override
+    public int remove() {
+        int result = peekBuildingNo();
+        removeAt(0);
         return result;
     }
 
-    // get min element from heap
-    public Building peek() {
-        if (this.isEmpty()) {
-            return null;
+    // remove building with the given building no from heap; returns false if it is not in heap
+    @Override
+    public boolean remove(int buildingNo) {
+        int index = positions.get(buildingNo);
+        if (index < 0) return false;
+        removeAt(index);
+        return true;
+    }
+
+    // check if building with the given building no is in heap
+    @Override
+    public boolean contains(int buildingNo) {
+        return positions.containsKey(buildingNo);
+    }
+
+    // get executed time of building with the given building no as known to the heap
+    @Override
+    public int getExecutedTime(int buildingNo) {
+        return currentExecutedTime(keys[indexOf(buildingNo)]);
+    }
+
+    // add delta to executed time of building with the given building no and restore its position
+    @Override
+    public void increaseKey(int buildingNo, int delta) {
+        if (delta < 0) throw new IllegalArgumentException("delta must not be negative: " + delta);
+        int index = indexOf(buildingNo);
+        keys[index] = pack(executedTime(keys[index]) + delta, buildingNo);
+        heapifyDown(index); // a larger key can only move towards the leaves
+    }
+
+    // get building no of min element from heap
+    @Override
+    public int peekBuildingNo() {
+        if (this.isEmpty()) throw new IllegalStateException();
+        return buildingNo(keys[0]);
+    }
+
+    // get executed time of min element from heap
+    @Override
+    public int peekExecutedTime() {
+        if (this.isEmpty()) throw new IllegalStateException();
+        return currentExecutedTime(keys[0]);
+    }
+
+    // get total time of min element from heap
+    @Override
+    public int peekTotalTime() {
+        if (this.isEmpty()) throw new IllegalStateException();
+        return totalTimes[0];
+    }
+
+    // executed time of the entry with the given key including progress of a running building
+    private int currentExecutedTime(long key) {
+        int executedTime = executedTime(key);
+        return progress == null ? executedTime : progress.executedTime(buildingNo(key), executedTime);
+    }
+
+    // replace the entry at index with the last entry and move that entry to its place
+    private void removeAt(int index) {
+        positions.remove(buildingNo(keys[index]));
+        size -= 1;
+        if (index != size) {
+            keys[index] = keys[size];
+            totalTimes[index] = totalTimes[size];
+            positions.put(buildingNo(keys[index]), index);
+            // the moved entry may be smaller than the parent of index or larger than its children
+            if (hasParent(index) && isSmaller(index, parentIndex(index)))
+                heapifyUp(index);
+            else
+                heapifyDown(index);
         }
-        return heap[0];
+        if (size < keys.length >> 2 && keys.length > initialCapacity)
+            resize(Math.max(keys.length >> 1, initialCapacity));
+    }
+
+    // release unused capacity so that memory is proportional to the no of buildings in heap
+    public void trimToSize() {
+        if (size < keys.length) resize(Math.max(size, 1));
     }
 
-    // percolate downwards from root until heap invariant is maintained
-    public void heapifyDown() {
-        int index = 0;
-        while (hasLeftChild(index)) {
-            int leftChild = leftIndex(index);
-            int smallerChild = leftChild;
+    // no of buildings heap can hold before it has to grow
+    public int capacity() {
+        return keys.length;
+    }
+
+    private void resize(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        totalTimes = Arrays.copyOf(totalTimes, capacity);
+    }
 
-            if (hasRightChild(index)) {
-                int rightChild = rightIndex(index);
-                if (isSmaller(rightChild, leftChild)) {
-                    smallerChild = rightChild;
+    // heap slot of building with the given building no
+    private int indexOf(int buildingNo) {
+        int index = positions.get(buildingNo);
+        if (index < 0) throw new IllegalArgumentException("building " + buildingNo + " not in heap");
+        return index;
+    }
+
+    // percolate downwards from index until heap invariant is maintained
+    private void heapifyDown(int index) {
+        while (hasChild(index)) {
+            // smallest of the adjacent children of index
+            int firstChild = firstChildIndex(index);
+            int lastChild = Math.min(firstChild + arity, size) - 1;
+            int smallerChild = firstChild;
+            for (int child = firstChild + 1; child <= lastChild; child++) {
+                if (isSmaller(child, smallerChild)) {
+                    smallerChild = child;
                 }
             }
             if (isSmaller(smallerChild, index)) {
                 swap(index, smallerChild);
+                if (metrics != null) metrics.siftDownSteps++;
                 index = smallerChild;
             } else {
                 // heap invariant is maintained
@@ -57,14 +245,13 @@ public class MinHeap {
         }
     }
 
-    // percolate upwards until heap invariant is maintained
-    private void heapifyUp() {
-        int index = this.size - 1;
-
+    // percolate upwards from index until heap invariant is maintained
+    private void heapifyUp(int index) {
         while (hasParent(index)) {
             int parent = parentIndex(index);
             if (isSmaller(index, parent)) {
                 swap(index, parent);
+                if (metrics != null) metrics.siftUpSteps++;
                 index = parent;
             } else {
                 // heap invariant is maintained
@@ -74,47 +261,67 @@ public class MinHeap {
     }
 
     // check if heap is empty
+    @Override
     public boolean isEmpty() {
         return size == 0;
     }
 
-    // check if heap is full
-    public boolean isFull() {
-        return size == heap.length;
+    // no of buildings in heap
+    @Override
+    public int size() {
+        return size;
     }
 
-    private boolean isSmaller(int left, int right) {
-        return heap[left].compareTo(heap[right]) < 0;
+    // visit buildings in heap order
+    @Override
+    public void forEach(BuildingVisitor visitor) throws IOException {
+        for (int i = 0; i < size; i++)
+            visitor.visit(buildingNo(keys[i]), executedTime(keys[i]), totalTimes[i]);
     }
 
-    private boolean hasParent(int i) {
-        return i > 0;
+    // executed time in the high bits and building no in the low bits, so that longs compare like buildings; the sign
+    // bit of the building no is flipped so that negative building nos sort before positive ones as in compareTo
+    private static long pack(int executedTime, int buildingNo) {
+        return ((long) executedTime << 32) | ((buildingNo ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
     }
 
-    private int leftIndex(int i) {
-        return (i * 2) + 1;
+    private static int executedTime(long key) {
+        return (int) (key >>> 32);
     }
 
-    private int rightIndex(int i) {
-        return (i * 2) + 2;
+    private static int buildingNo(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+
+    private boolean isSmaller(int left, int right) {
+        return keys[left] < keys[right];
+    }
+
+    private boolean hasParent(int i) {
+        return i > 0;
     }
 
-    private boolean hasLeftChild(int i) {
-        return leftIndex(i) < size;
+    private int firstChildIndex(int i) {
+        return (i * arity) + 1;
     }
 
-    private boolean hasRightChild(int i) {
-        return rightIndex(i) < size;
+    private boolean hasChild(int i) {
+        return firstChildIndex(i) < size;
     }
 
     private int parentIndex(int i) {
-        return (i - 1) / 2;
+        return (i - 1) / arity;
     }
 
-    //swap objects at indexes
+    //swap entries at indexes
     private void swap(int j, int k) {
-        Building tmp = new Building(heap[j]);
-        heap[j] = new Building(heap[k]);
-        heap[k] = tmp;
+        long key = keys[j];
+        keys[j] = keys[k];
+        keys[k] = key;
+        int totalTime = totalTimes[j];
+        totalTimes[j] = totalTimes[k];
+        totalTimes[k] = totalTime;
+        positions.put(buildingNo(keys[j]), j);
+        positions.put(buildingNo(keys[k]), k);
     }
 }
@@ -7,10 +7,12 @@ public class Node {
     public int key;       //building no
     public Building val;  //associated building metadata
     public boolean color; //color of node
+    public int size;      //no of nodes in subtree rooted at this node
 
     public Node(int key, Building val, boolean color) {
         this.key = key;
         this.val = val;
         this.color = color;
+        this.size = 1;
     }
 }
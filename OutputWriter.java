@@ -0,0 +1,134 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of building tuples. Ints are formatted straight into a reusable byte buffer which is written to
+ * a channel according to the flush policy, so writing output never allocates.
+ */
+public class OutputWriter implements Closeable {
+    public static final int FLUSH_WHEN_FULL = 1;  // write to channel only when buffer is full and on close
+    public static final int FLUSH_EVERY_LINE = 2; // write to channel at the end of every line
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_VALUE = Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_INT_LENGTH = MIN_VALUE.length;
+
+    private final WritableByteChannel channel;
+    private final int flushPolicy;
+    private final ByteBuffer buffer;
+    private final byte[] bytes; // backing array of buffer
+    private Metrics metrics = null; // counts the time spent writing to channel; null if metrics are off
+    private long bytesWritten = 0;  // no of bytes written to channel
+
+    public OutputWriter(WritableByteChannel channel) {
+        this(channel, FLUSH_WHEN_FULL, DEFAULT_BUFFER_SIZE);
+    }
+
+    public OutputWriter(WritableByteChannel channel, int flushPolicy, int bufferSize) {
+        if (flushPolicy != FLUSH_WHEN_FULL && flushPolicy != FLUSH_EVERY_LINE)
+            throw new IllegalArgumentException("unknown flush policy: " + flushPolicy);
+        if (bufferSize < MAX_INT_LENGTH + LINE_SEPARATOR.length)
+            throw new IllegalArgumentException("buffer size too small: " + bufferSize);
+        this.channel = channel;
+        this.flushPolicy = flushPolicy;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.bytes = buffer.array();
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // write building tuple (buildingNo,executedTime,totalTime)
+    public void writeBuilding(int buildingNo, int executedTime, int totalTime) throws IOException {
+        writeByte('(');
+        writeInt(buildingNo);
+        writeByte(',');
+        writeInt(executedTime);
+        writeByte(',');
+        writeInt(totalTime);
+        writeByte(')');
+    }
+
+    // write completion tuple (buildingNo,completionTime)
+    public void writeCompletion(int buildingNo, int completionTime) throws IOException {
+        writeByte('(');
+        writeInt(buildingNo);
+        writeByte(',');
+        writeInt(completionTime);
+        writeByte(')');
+    }
+
+    // write a single ascii character
+    public void writeByte(char c) throws IOException {
+        if (!buffer.hasRemaining()) flush();
+        buffer.put((byte) c);
+    }
+
+    // write decimal digits of value
+    public void writeInt(int value) throws IOException {
+        if (buffer.remaining() < MAX_INT_LENGTH) flush();
+        if (value == Integer.MIN_VALUE) {
+            buffer.put(MIN_VALUE); // cannot be negated
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        // fill digits backwards from the end of the number
+        int end = buffer.position() + stringSize(value);
+        int i = end;
+        do {
+            bytes[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.position(end);
+    }
+
+    // end the current line
+    public void newLine() throws IOException {
+        if (buffer.remaining() < LINE_SEPARATOR.length) flush();
+        buffer.put(LINE_SEPARATOR);
+        if (flushPolicy == FLUSH_EVERY_LINE) flush();
+    }
+
+    // write buffered bytes to channel
+    public void flush() throws IOException {
+        long start = metrics == null ? 0 : System.nanoTime();
+        buffer.flip();
+        bytesWritten += buffer.remaining();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+        if (metrics != null) metrics.outputNanos += System.nanoTime() - start;
+    }
+
+    // no of bytes written to channel; bytes still in the buffer are not counted
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // no of decimal digits of a non negative value
+    private static int stringSize(int value) {
+        int size = 1;
+        while (value >= 10) {
+            value /= 10;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,655 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Left leaning red black tree of buildings keyed on building no whose published versions are immutable, so other
+ * threads can read a consistent snapshot of all buildings while the simulation keeps updating the tree.
+ *
+ * Updates copy the nodes on the path from the root instead of changing them in place. Every node carries the
+ * version in which it was created; nodes of the current version have not been published yet and are updated in
+ * place, so a run of updates between two snapshots copies every node at most once. Publishing a snapshot moves
+ * the tree to the next version, which freezes every node reachable from the published root. Readers never lock
+ * and the simulation never waits for them.
+ */
+public class PersistentRedBlackTree implements BuildingTree {
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+    private static final int MAX_HEIGHT = 64; // a left leaning red black tree is at most 2 * log(n + 1) high
+
+    private Node root = null;
+    private long version = 0;   // version of the nodes which may be updated in place
+    private final Node[] stack = new Node[MAX_HEIGHT]; // path of pending nodes of a range scan
+    private boolean debug = false; // validate the tree after every update
+    private Progress progress = null; // progress of the running building; null if stored executed times are current
+    private Metrics metrics = null;   // counters of rotations and color flips; null if metrics are off
+    private final RangePrinter rangePrinter = new RangePrinter();
+    private volatile Snapshot snapshot = null; // last published snapshot; null until the first publish
+    private volatile boolean snapshotRequested = false; // check if a reader has seen the last published snapshot
+
+    /**
+     * Node of the tree; frozen once its version is published
+     */
+    private static final class Node {
+        Node left;
+        Node right;
+        int key;            // building no
+        int executedTime;   // executed time at the end of the last run of the building
+        int totalTime;
+        boolean color;
+        int size;           // no of nodes in subtree rooted at this node
+        final long version; // version of the tree in which the node was created
+
+        Node(int key, int executedTime, int totalTime, boolean color, long version) {
+            this.key = key;
+            this.executedTime = executedTime;
+            this.totalTime = totalTime;
+            this.color = color;
+            this.size = 1;
+            this.version = version;
+        }
+
+        // copy of node x in the given version
+        Node(Node x, long version) {
+            this.left = x.left;
+            this.right = x.right;
+            this.key = x.key;
+            this.executedTime = x.executedTime;
+            this.totalTime = x.totalTime;
+            this.color = x.color;
+            this.size = x.size;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Immutable view of all buildings as of the day it was published. It is safe to read from any thread and from
+     * many threads at once; executed times of running buildings are derived from a copy of the progress taken
+     * with it.
+     */
+    public static final class Snapshot {
+        private final Node root;
+        private final Progress progress; // copy of progress when published; null if stored executed times are current
+
+        private Snapshot(Node root, Progress progress) {
+            this.root = root;
+            this.progress = progress;
+        }
+
+        // global time of the snapshot
+        public int getTime() {
+            return progress == null ? 0 : progress.getTime();
+        }
+
+        public boolean isEmpty() {
+            return root == null;
+        }
+
+        public int size() {
+            return PersistentRedBlackTree.size(root);
+        }
+
+        public boolean contains(int key) {
+            return find(root, key) != null;
+        }
+
+        // building nos of the buildings under construction at the time of the snapshot, in the order of crews
+        public int[] getRunningBuildingNos() {
+            if (progress == null) return new int[0];
+            int count = 0;
+            int[] buildingNos = new int[progress.getCrewCount()];
+            for (int crew = 0; crew < buildingNos.length; crew++) {
+                if (progress.isBusy(crew))
+                    buildingNos[count++] = progress.getBuildingNo(crew);
+            }
+            return Arrays.copyOf(buildingNos, count);
+        }
+
+        // executed time of building with building no: key; -1 if no such building
+        public int getExecutedTime(int key) {
+            Node x = find(root, key);
+            return x == null ? -1 : executedTime(progress, x);
+        }
+
+        // total time of building with building no: key; -1 if no such building
+        public int getTotalTime(int key) {
+            Node x = find(root, key);
+            return x == null ? -1 : x.totalTime;
+        }
+
+        // visit buildings with building no in the range of low and hi in ascending order
+        public void forEachInRange(int low, int hi, BuildingVisitor visitor) throws IOException {
+            PersistentRedBlackTree.forEachInRange(root, low, hi, new Node[MAX_HEIGHT], progress, visitor);
+        }
+
+        // print a particular building like PrintBuilding(a)
+        public void print(int key, OutputWriter out) throws IOException {
+            PersistentRedBlackTree.print(root, key, progress, out);
+        }
+
+        // print all buildings in the range of low and hi like PrintBuilding(a,b)
+        public void print(int low, int hi, OutputWriter out) throws IOException {
+            if (root == null)
+                out.writeBuilding(0, 0, 0);
+            else
+                forEachInRange(low, hi, new RangePrinter().reset(out));
+            out.newLine();
+        }
+    }
+
+    public PersistentRedBlackTree() {
+    }
+
+    // last published snapshot, null if none was published yet; may be called from any thread. Asks the simulation to
+    // publish a new one, so a reader polling the tree sees its state as of at most one event before the previous poll
+    public Snapshot getSnapshot() {
+        snapshotRequested = true;
+        return snapshot;
+    }
+
+    // publish a snapshot of the buildings at the current global time if a reader asked for one
+    public void publishIfRequested() {
+        if (snapshotRequested)
+            publish();
+    }
+
+    // publish a snapshot of the buildings at the current global time; every node becomes immutable
+    public void publish() {
+        snapshotRequested = false;
+        Snapshot published = new Snapshot(root, progress == null ? null : new Progress(progress));
+        version++;
+        snapshot = published;
+    }
+
+    // validate bst, subtree size and red black invariants after every update when debug is on
+    @Override
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    // derive the executed time of the running building lazily from progress
+    @Override
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // current executed time of the building of node x
+    private static int executedTime(Progress progress, Node x) {
+        return progress == null ? x.executedTime : progress.executedTime(x.key, x.executedTime);
+    }
+
+    private static boolean isRed(Node x) {
+        if (x == null) return false;
+        return x.color == RED;
+    }
+
+    // no of nodes in subtree rooted at x; 0 if x is null
+    private static int size(Node x) {
+        if (x == null) return 0;
+        return x.size;
+    }
+
+    // node with the given key in subtree rooted at x; null if no such key
+    private static Node find(Node x, int key) {
+        while (x != null) {
+            if (key < x.key) x = x.left;
+            else if (key > x.key) x = x.right;
+            else return x;
+        }
+        return null;
+    }
+
+    // x if it can be updated in place, else a copy of it in the current version
+    private Node writable(Node x) {
+        return x.version == version ? x : new Node(x, version);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean contains(int key) {
+        return find(root, key) != null;
+    }
+
+    @Override
+    public int getExecutedTime(int key) {
+        Node x = find(root, key);
+        return x == null ? -1 : executedTime(progress, x);
+    }
+
+    @Override
+    public int getTotalTime(int key) {
+        Node x = find(root, key);
+        return x == null ? -1 : x.totalTime;
+    }
+
+    // insert building with building no as key; updates building if key already exists
+    @Override
+    public void put(int key, int executedTime, int totalTime) {
+        root = put(root, key, executedTime, totalTime);
+        if (root.color != BLACK) {
+            root = writable(root);
+            root.color = BLACK;
+        }
+        if (debug) check();
+    }
+
+    private Node put(Node h, int key, int executedTime, int totalTime) {
+        if (h == null) return new Node(key, executedTime, totalTime, RED, version);
+        h = writable(h);
+        if (key < h.key) {
+            h.left = put(h.left, key, executedTime, totalTime);
+        } else if (key > h.key) {
+            h.right = put(h.right, key, executedTime, totalTime);
+        } else {
+            h.executedTime = executedTime; // tree shape does not change when updating a building
+            h.totalTime = totalTime;
+            return h;
+        }
+        // fix up any right-leaning links and subtree sizes
+        if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+        if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+        if (isRed(h.left) && isRed(h.right)) flipColors(h);
+        h.size = size(h.left) + size(h.right) + 1;
+        return h;
+    }
+
+    // insert buildings sorted on building no; an empty tree is built in linear time, otherwise buildings are
+    // inserted one by one
+    @Override
+    public void putAllSorted(List<Building> buildings) {
+        int count = buildings.size();
+        for (int i = 1; i < count; i++)
+            if (buildings.get(i - 1).getBuildingNo() >= buildings.get(i).getBuildingNo())
+                throw new IllegalArgumentException("buildings not sorted on building no at index " + i);
+        if (root == null) {
+            root = build(buildings, 0, count, blackHeight(count));
+        } else {
+            for (Building building : buildings)
+                put(building.getBuildingNo(), building.getExecutedTime(), building.getTotalTime());
+        }
+        if (debug) check();
+    }
+
+    // build a subtree with the given no of black links on every path from sorted buildings starting at lo; it is
+    // built as a 2-3 tree in which 3-nodes are a black node with a red left child
+    private Node build(List<Building> buildings, int lo, int count, int blackHeight) {
+        if (count == 0) return null;
+        long maxChild = maxKeys(blackHeight - 1);
+        if (count - 1 <= 2 * maxChild) {
+            // 2-node: split the remaining buildings evenly
+            int leftCount = count / 2;
+            Node h = newNode(buildings.get(lo + leftCount), BLACK);
+            h.left = build(buildings, lo, leftCount, blackHeight - 1);
+            h.right = build(buildings, lo + leftCount + 1, count - 1 - leftCount, blackHeight - 1);
+            h.size = count;
+            return h;
+        }
+        // 3-node: split the remaining buildings evenly in three
+        int rest = count - 2;
+        int first = rest / 3 + (rest % 3 > 0 ? 1 : 0);
+        int second = rest / 3 + (rest % 3 > 1 ? 1 : 0);
+        Node x = newNode(buildings.get(lo + first), RED);
+        x.left = build(buildings, lo, first, blackHeight - 1);
+        x.right = build(buildings, lo + first + 1, second, blackHeight - 1);
+        x.size = first + second + 1;
+        int k = lo + first + 1 + second;
+        Node h = newNode(buildings.get(k), BLACK);
+        h.left = x;
+        h.right = build(buildings, k + 1, rest - first - second, blackHeight - 1);
+        h.size = count;
+        return h;
+    }
+
+    private Node newNode(Building building, boolean color) {
+        return new Node(building.getBuildingNo(), building.getExecutedTime(), building.getTotalTime(), color,
+                version);
+    }
+
+    // largest black height of a tree of count nodes, whose 2-3 tree has only 2-nodes above the bottom level
+    private static int blackHeight(int count) {
+        return 31 - Integer.numberOfLeadingZeros(count + 1);
+    }
+
+    // largest no of keys in a 2-3 tree with the given black height i.e one with only 3-nodes
+    private static long maxKeys(int blackHeight) {
+        long max = 1;
+        for (int i = 0; i < blackHeight; i++) max *= 3;
+        return max - 1;
+    }
+
+    @Override
+    public void setExecutedTime(int key, int executedTime) {
+        root = setExecutedTime(root, key, executedTime);
+    }
+
+    private Node setExecutedTime(Node h, int key, int executedTime) {
+        if (h == null) throw new IllegalArgumentException("building " + key + " not in tree");
+        h = writable(h);
+        if (key < h.key) h.left = setExecutedTime(h.left, key, executedTime);
+        else if (key > h.key) h.right = setExecutedTime(h.right, key, executedTime);
+        else h.executedTime = executedTime;
+        return h;
+    }
+
+    // deletes building with specified key i.e building no; returns false if the building is not present
+    @Override
+    public boolean delete(int key) {
+        if (!contains(key)) return false;
+
+        // if both children of root are black, set root to red
+        if (!isRed(root.left) && !isRed(root.right)) {
+            root = writable(root);
+            root.color = RED;
+        }
+        root = delete(root, key);
+        if (root != null && root.color != BLACK) {
+            root = writable(root);
+            root.color = BLACK;
+        }
+        if (debug) check();
+        return true;
+    }
+
+    // delete key from subtree rooted at h, keeping the current node or its left child red on the way down
+    private Node delete(Node h, int key) {
+        h = writable(h);
+        if (key < h.key) {
+            if (!isRed(h.left) && !isRed(h.left.left))
+                h = moveRedLeft(h);
+            h.left = delete(h.left, key);
+        } else {
+            if (isRed(h.left))
+                h = rotateRight(h);
+            if (key == h.key && (h.right == null))
+                return null;
+            if (!isRed(h.right) && !isRed(h.right.left))
+                h = moveRedRight(h);
+            if (key == h.key) {
+                // replace the building with its successor and remove the node of the successor instead
+                Node x = h.right;
+                while (x.left != null) x = x.left;
+                h.key = x.key;
+                h.executedTime = x.executedTime;
+                h.totalTime = x.totalTime;
+                h.right = deleteMin(h.right);
+            } else {
+                h.right = delete(h.right, key);
+            }
+        }
+        return balance(h);
+    }
+
+    // delete the min key from subtree rooted at h
+    private Node deleteMin(Node h) {
+        if (h.left == null)
+            return null;
+        h = writable(h);
+        if (!isRed(h.left) && !isRed(h.left.left))
+            h = moveRedLeft(h);
+        h.left = deleteMin(h.left);
+        return balance(h);
+    }
+
+    // make left leaning link lean to the right; h must be writable
+    private Node rotateRight(Node h) {
+        assert (h != null) && isRed(h.left);
+        if (metrics != null) metrics.rotations++;
+        Node x = writable(h.left);
+        h.left = x.right;
+        x.right = h;
+        x.color = h.color;
+        h.color = RED;
+        x.size = h.size;
+        h.size = size(h.left) + size(h.right) + 1;
+        return x;
+    }
+
+    // make right leaning link lean to the left; h must be writable
+    private Node rotateLeft(Node h) {
+        assert (h != null) && isRed(h.right);
+        if (metrics != null) metrics.rotations++;
+        Node x = writable(h.right);
+        h.right = x.left;
+        x.left = h;
+        x.color = h.color;
+        h.color = RED;
+        x.size = h.size;
+        h.size = size(h.left) + size(h.right) + 1;
+        return x;
+    }
+
+    // flip the colors of a node and its two children; h must be writable
+    private void flipColors(Node h) {
+        assert (h != null) && (h.left != null) && (h.right != null);
+        if (metrics != null) metrics.colorFlips++;
+        h.left = writable(h.left);
+        h.right = writable(h.right);
+        h.color = !h.color;
+        h.left.color = !h.left.color;
+        h.right.color = !h.right.color;
+    }
+
+    // Assuming that h is red and both h.left and h.left.left
+    // are black, make h.left or one of its children red.
+    private Node moveRedLeft(Node h) {
+        if (metrics != null) metrics.moveRedLefts++;
+        flipColors(h);
+        if (isRed(h.right.left)) {
+            h.right = rotateRight(h.right);
+            h = rotateLeft(h);
+            flipColors(h);
+        }
+        return h;
+    }
+
+    // Assuming that h is red and both h.right and h.right.left
+    // are black, make h.right or one of its children red.
+    private Node moveRedRight(Node h) {
+        if (metrics != null) metrics.moveRedRights++;
+        flipColors(h);
+        if (isRed(h.left.left)) {
+            h = rotateRight(h);
+            flipColors(h);
+        }
+        return h;
+    }
+
+    // maintain red black tree invariant property; h must be writable
+    private Node balance(Node h) {
+        if (isRed(h.right)) h = rotateLeft(h);
+        if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+        if (isRed(h.left) && isRed(h.right)) flipColors(h);
+        h.size = size(h.left) + size(h.right) + 1;
+        return h;
+    }
+
+    // check if bst, subtree size and red black invariants have been maintained
+    private void check() {
+        if (!isBST(root, 0, 0) || !isSizeConsistent(root) || !isBalanced())
+            throw new IllegalStateException("red black tree invariants violated");
+    }
+
+    private boolean isSizeConsistent(Node x) {
+        if (x == null) return true;
+        if (x.size != size(x.left) + size(x.right) + 1) return false;
+        return isSizeConsistent(x.left) && isSizeConsistent(x.right);
+    }
+
+    private boolean isBST(Node x, int min, int max) {
+        if (x == null) return true;
+        if (min != 0 && x.key <= min) return false;
+        if (max != 0 && x.key >= max) return false;
+        return isBST(x.left, min, x.key) && isBST(x.right, x.key, max);
+    }
+
+    // check if all paths from root to leaf have same no of black links
+    private boolean isBalanced() {
+        int black = 0;
+        for (Node x = root; x != null; x = x.left)
+            if (!isRed(x)) black++;
+        return isBalanced(root, black);
+    }
+
+    private boolean isBalanced(Node x, int black) {
+        if (x == null) return black == 0;
+        if (!isRed(x)) black--;
+        return isBalanced(x.left, black) && isBalanced(x.right, black);
+    }
+
+    // no of buildings with building no lesser than key
+    @Override
+    public int rank(int key) {
+        int rank = 0;
+        Node x = root;
+        while (x != null) {
+            if (key < x.key) {
+                x = x.left;
+            } else if (key > x.key) {
+                rank += 1 + size(x.left);
+                x = x.right;
+            } else {
+                return rank + size(x.left);
+            }
+        }
+        return rank;
+    }
+
+    // building no with the given rank i.e the building no which has rank smaller building nos
+    @Override
+    public int select(int rank) {
+        if (rank < 0 || rank >= size())
+            throw new IllegalArgumentException("rank out of range: " + rank);
+        Node x = root;
+        while (true) {
+            int leftSize = size(x.left);
+            if (rank < leftSize) {
+                x = x.left;
+            } else if (rank > leftSize) {
+                rank -= leftSize + 1;
+                x = x.right;
+            } else {
+                return x.key;
+            }
+        }
+    }
+
+    // no of buildings with building no in the range of low and hi
+    @Override
+    public int countInRange(int low, int hi) {
+        if (low > hi) return 0;
+        return rank(hi) - rank(low) + (contains(hi) ? 1 : 0);
+    }
+
+    @Override
+    public void forEachInRange(int low, int hi, BuildingVisitor visitor) throws IOException {
+        forEachInRange(root, low, hi, stack, progress, visitor);
+    }
+
+    // visit buildings in subtree rooted at x with keys in the range of low and hi in ascending order using the
+    // given stack for the path of pending nodes
+    private static void forEachInRange(Node x, int low, int hi, Node[] stack, Progress progress,
+                                       BuildingVisitor visitor) throws IOException {
+        int top = 0;
+        while (true) {
+            while (x != null) {
+                if (x.key < low) {
+                    x = x.right;
+                } else {
+                    stack[top++] = x;
+                    x = x.left;
+                }
+            }
+            if (top == 0)
+                return;
+            x = stack[--top];
+            stack[top] = null;
+            if (x.key > hi) {
+                // every remaining key is higher than hi
+                while (top > 0) stack[--top] = null;
+                return;
+            }
+            visitor.visit(x.key, executedTime(progress, x), x.totalTime);
+            x = x.right;
+        }
+    }
+
+    // visit buildings in any of the sorted disjoint ranges in ascending order in a single walk like forEachInRange
+    @Override
+    public void forEachInRanges(int[] lows, int[] highs, int count, BuildingVisitor visitor) throws IOException {
+        if (count == 0)
+            return;
+        int range = 0;
+        int low = lows[0];
+        int hi = highs[0];
+        int top = 0;
+        Node x = root;
+        while (true) {
+            while (x != null) {
+                if (x.key < low) {
+                    x = x.right;
+                } else {
+                    stack[top++] = x;
+                    x = x.left;
+                }
+            }
+            if (top == 0)
+                return;
+            x = stack[--top];
+            stack[top] = null;
+            if (x.key > hi) {
+                // skip the ranges below the key
+                do {
+                    range++;
+                } while (range < count && highs[range] < x.key);
+                if (range == count) {
+                    while (top > 0) stack[--top] = null;
+                    return;
+                }
+                low = lows[range];
+                hi = highs[range];
+            }
+            // pending nodes pushed for an earlier range may lie before the current range
+            if (x.key >= low)
+                visitor.visit(x.key, executedTime(progress, x), x.totalTime);
+            x = x.right;
+        }
+    }
+
+    @Override
+    public void print(int key, OutputWriter out) throws IOException {
+        print(root, key, progress, out);
+    }
+
+    // print building with building no: key in subtree rooted at root; (0,0,0) if it doesn't exist
+    private static void print(Node root, int key, Progress progress, OutputWriter out) throws IOException {
+        Node x = find(root, key);
+        if (x == null)
+            out.writeBuilding(0, 0, 0); // output if key doesn't exist
+        else
+            out.writeBuilding(x.key, executedTime(progress, x), x.totalTime);
+        out.newLine();
+    }
+
+    @Override
+    public void print(int low, int hi, OutputWriter out) throws IOException {
+        if (root == null)
+            out.writeBuilding(0, 0, 0);
+        else
+            forEachInRange(low, hi, rangePrinter.reset(out));
+        out.newLine();
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from building no to its slot in the heap. Keys and values are held in primitive arrays
+ * and collisions are resolved by linear probing, so lookups and updates never allocate. The table doubles when
+ * more than half full and halves when less than an eighth full, but never below its initial capacity.
+ */
+public class PositionMap {
+    private static final int EMPTY = -1; // slot value marking a free entry
+    private final int initialCapacity;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+
+    public PositionMap(int expectedSize) {
+        initialCapacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        allocate(initialCapacity);
+    }
+
+    // slot associated with building no; -1 if building is not present
+    public int get(int key) {
+        int i = indexOf(key);
+        return values[i] == EMPTY ? EMPTY : values[i];
+    }
+
+    // check if building no is present
+    public boolean containsKey(int key) {
+        return values[indexOf(key)] != EMPTY;
+    }
+
+    // associate slot with building no; updates slot if building is already present
+    public void put(int key, int value) {
+        int i = indexOf(key);
+        if (values[i] == EMPTY) {
+            keys[i] = key;
+            size += 1;
+        }
+        values[i] = value;
+        if (size * 2 > keys.length) rehash(keys.length * 2); // keep load factor at most 1/2
+    }
+
+    // remove building no and shift back entries of the same probe run into the freed entry
+    public void remove(int key) {
+        int i = indexOf(key);
+        if (values[i] == EMPTY) return;
+        values[i] = EMPTY;
+        size -= 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == EMPTY) break;
+            int home = hash(keys[j]);
+            // move entry j to i unless its home lies cyclically in (i, j]
+            if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) continue;
+            keys[i] = keys[j];
+            values[i] = values[j];
+            values[j] = EMPTY;
+            i = j;
+        }
+        if (size * 8 < keys.length && keys.length > initialCapacity) rehash(keys.length / 2);
+    }
+
+    // no of buildings in map
+    public int size() {
+        return size;
+    }
+
+    // remove all buildings
+    public void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+    }
+
+    // entry which holds key or the free entry where key would be inserted
+    private int indexOf(int key) {
+        int i = hash(key);
+        while (values[i] != EMPTY && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private int hash(int key) {
+        int h = key * 0x9E3779B9; // fibonacci hashing spreads consecutive building nos
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == EMPTY) continue;
+            int j = indexOf(oldKeys[i]);
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
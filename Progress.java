@@ -0,0 +1,103 @@
+/**
+ * Lazy progress of the buildings under construction, one per crew. Instead of writing the executed time of a
+ * running building every day, the time at which it started running is recorded and its executed time is derived
+ * on read from the executed time it had accumulated before. The building queue and the red black trees consult
+ * the same Progress, so both report current progress while storing executed times only at the end of every run.
+ */
+public class Progress {
+    private int time = 0;                // current global time
+    private final int[] buildingNos;     // building under construction by every crew
+    private final int[] startTimes;      // global time at which the building of every crew started running
+    private final boolean[] busy;        // check if crew is running a building
+    private final PositionMap crews;     // crew of every running building no
+
+    public Progress() {
+        this(1);
+    }
+
+    public Progress(int crewCount) {
+        if (crewCount < 1) throw new IllegalArgumentException("crew count must be positive: " + crewCount);
+        buildingNos = new int[crewCount];
+        startTimes = new int[crewCount];
+        busy = new boolean[crewCount];
+        crews = new PositionMap(crewCount);
+    }
+
+    // copy of progress at its current global time, e.g. to be read by another thread while progress moves on
+    public Progress(Progress progress) {
+        this(progress.getCrewCount());
+        time = progress.time;
+        for (int crew = 0; crew < busy.length; crew++) {
+            if (progress.busy[crew])
+                start(crew, progress.buildingNos[crew], progress.startTimes[crew]);
+        }
+    }
+
+    // move the clock to the given global time
+    public void setTime(int time) {
+        this.time = time;
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    public int getCrewCount() {
+        return busy.length;
+    }
+
+    // crew starts running building with the given building no at the current global time
+    public void start(int crew, int buildingNo) {
+        start(crew, buildingNo, time);
+    }
+
+    // crew runs building with the given building no since the given global time
+    public void start(int crew, int buildingNo, int startTime) {
+        if (busy[crew]) throw new IllegalStateException("crew " + crew + " is busy");
+        busy[crew] = true;
+        buildingNos[crew] = buildingNo;
+        startTimes[crew] = startTime;
+        crews.put(buildingNo, crew);
+    }
+
+    // stop running the building of crew and return the no of days it ran
+    public int stop(int crew) {
+        int days = daysRun(crew);
+        if (busy[crew]) {
+            busy[crew] = false;
+            crews.remove(buildingNos[crew]);
+        }
+        return days;
+    }
+
+    // check if crew is running a building
+    public boolean isBusy(int crew) {
+        return busy[crew];
+    }
+
+    // check if building with the given building no is under construction
+    public boolean isRunning(int buildingNo) {
+        return crews.containsKey(buildingNo);
+    }
+
+    // building no of the building crew is running; only meaningful while crew is busy
+    public int getBuildingNo(int crew) {
+        return buildingNos[crew];
+    }
+
+    // global time at which the building of crew started running
+    public int getStartTime(int crew) {
+        return startTimes[crew];
+    }
+
+    // no of days the building of crew has run until the current global time; 0 if crew is not running a building
+    public int daysRun(int crew) {
+        return busy[crew] ? time - startTimes[crew] : 0;
+    }
+
+    // current executed time of a building given the executed time it had when it last started running
+    public int executedTime(int buildingNo, int storedExecutedTime) {
+        int crew = crews.get(buildingNo);
+        return crew < 0 ? storedExecutedTime : storedExecutedTime + time - startTimes[crew];
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * PrintBuilding(a) and PrintBuilding(a,b) instructions of the same day which are not separated by an update of the
+ * tree. The ranges are merged into sorted disjoint ranges and the buildings in them are collected in a single walk
+ * of the tree; then each query is answered from the collected buildings, in the order of the instructions, with
+ * the same output as RedBlackTree.print. A batch of one query is printed while the tree is walked, like
+ * RedBlackTree.print does, without merging or collecting.
+ */
+public class QueryBatch implements BuildingVisitor {
+    private int[] types = new int[16];
+    private int[] lows = new int[16];
+    private int[] highs = new int[16];
+    private int size = 0;
+    private long[] order = new long[16];      // low of query in the high half and its index in the low half
+    private int[] rangeLows = new int[16];    // merged ranges
+    private int[] rangeHighs = new int[16];
+    private int[] buildingNos = new int[64]; // collected buildings
+    private int[] executedTimes = new int[64];
+    private int[] totalTimes = new int[64];
+    private int buildings = 0;
+    private final RangePrinter printer = new RangePrinter(); // printer of a batch of one query
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // add a print instruction of type CMD_PRINT for building no low or CMD_PRINT_RAN for the range of low and high
+    public void add(int type, int low, int high) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            lows = Arrays.copyOf(lows, size * 2);
+            highs = Arrays.copyOf(highs, size * 2);
+            order = new long[size * 2];
+            rangeLows = new int[size * 2];
+            rangeHighs = new int[size * 2];
+        }
+        types[size] = type;
+        lows[size] = low;
+        highs[size] = type == risingCity.CMD_PRINT ? low : high;
+        size++;
+    }
+
+    // no of buildings visited by the last run
+    public int getBuildings() {
+        return buildings;
+    }
+
+    // lowest building no queried
+    public int getLow() {
+        int low = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++)
+            low = Math.min(low, lows[i]);
+        return low;
+    }
+
+    // highest building no queried
+    public int getHigh() {
+        int high = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++)
+            high = Math.max(high, highs[i]);
+        return high;
+    }
+
+    // print the answer of every query to out in the order the queries were added; the batch is kept until clear
+    public void run(BuildingTree tree, OutputWriter out) throws IOException {
+        buildings = 0;
+        if (tree.isEmpty()) {
+            for (int i = 0; i < size; i++) {
+                if (types[i] == risingCity.CMD_PRINT)
+                    tree.print(lows[i], out);
+                else
+                    tree.print(lows[i], highs[i], out);
+            }
+        } else if (size == 1) {
+            tree.forEachInRange(lows[0], highs[0], printer.reset(out));
+            buildings = printer.getCount();
+            if (types[0] == risingCity.CMD_PRINT && buildings == 0)
+                out.writeBuilding(0, 0, 0); // output if key doesn't exist
+            out.newLine();
+        } else {
+            tree.forEachInRanges(rangeLows, rangeHighs, mergeRanges(), this);
+            for (int i = 0; i < size; i++) {
+                int from = firstNotLesser(lows[i]);
+                if (types[i] == risingCity.CMD_PRINT) {
+                    if (from < buildings && buildingNos[from] == lows[i])
+                        out.writeBuilding(buildingNos[from], executedTimes[from], totalTimes[from]);
+                    else
+                        out.writeBuilding(0, 0, 0); // output if key doesn't exist
+                } else {
+                    for (int j = from; j < buildings && buildingNos[j] <= highs[i]; j++) {
+                        if (j > from)
+                            out.writeByte(',');
+                        out.writeBuilding(buildingNos[j], executedTimes[j], totalTimes[j]);
+                    }
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    // remove all queries
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public void visit(int buildingNo, int executedTime, int totalTime) {
+        if (buildings == buildingNos.length) {
+            buildingNos = Arrays.copyOf(buildingNos, buildings * 2);
+            executedTimes = Arrays.copyOf(executedTimes, buildings * 2);
+            totalTimes = Arrays.copyOf(totalTimes, buildings * 2);
+        }
+        buildingNos[buildings] = buildingNo;
+        executedTimes[buildings] = executedTime;
+        totalTimes[buildings] = totalTime;
+        buildings++;
+    }
+
+    // merge the ranges of the queries into sorted disjoint ranges; returns the no of merged ranges
+    private int mergeRanges() {
+        int queries = 0;
+        for (int i = 0; i < size; i++) {
+            if (lows[i] <= highs[i]) // empty ranges print an empty line without visiting the tree
+                order[queries++] = (long) lows[i] << 32 | i;
+        }
+        Arrays.sort(order, 0, queries);
+        int ranges = 0;
+        for (int q = 0; q < queries; q++) {
+            int i = (int) order[q];
+            if (ranges > 0 && lows[i] <= rangeHighs[ranges - 1]) {
+                rangeHighs[ranges - 1] = Math.max(rangeHighs[ranges - 1], highs[i]);
+            } else {
+                rangeLows[ranges] = lows[i];
+                rangeHighs[ranges] = highs[i];
+                ranges++;
+            }
+        }
+        return ranges;
+    }
+
+    // index of the first collected building with building no not lesser than key
+    private int firstNotLesser(int key) {
+        int low = 0;
+        int high = buildings;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buildingNos[mid] < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
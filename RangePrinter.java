@@ -0,0 +1,29 @@
+import java.io.IOException;
+
+/**
+ * Visitor which prints the buildings of a range scan as a comma separated list of building tuples
+ */
+public class RangePrinter implements BuildingVisitor {
+    private OutputWriter out;
+    private int count; // no of buildings printed since reset
+
+    // start a new list written to out
+    public RangePrinter reset(OutputWriter out) {
+        this.out = out;
+        this.count = 0;
+        return this;
+    }
+
+    // no of buildings printed since the last reset
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void visit(int buildingNo, int executedTime, int totalTime) throws IOException {
+        if (count > 0)
+            out.writeByte(',');
+        out.writeBuilding(buildingNo, executedTime, totalTime);
+        count++;
+    }
+}
@@ -0,0 +1,29 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a CountBuildings(a,b) instruction or a batch of PrintBuilding instructions of the same
+ * day; its duration is the time the ranges were scanned and printed, and low and high span all of them.
+ * RankBuilding and SelectBuilding descend the tree once without scanning a range and record no event.
+ */
+@Name("risingCity.RangeQuery")
+@Label("Range Query")
+@Category("Rising City")
+@Description("A range of building nos was printed or counted")
+public class RangeQueryEvent extends jdk.jfr.Event {
+    @Label("Low")
+    public int low;
+
+    @Label("High")
+    public int high;
+
+    @Label("Buildings")
+    @Description("No of buildings in the range, or in the union of the ranges of a batch")
+    public int buildings;
+
+    @Label("Queries")
+    @Description("No of instructions answered by the scan")
+    public int queries;
+}
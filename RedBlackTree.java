@@ -1,21 +1,75 @@
-public class RedBlackTree {
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Left leaning red black tree of buildings keyed on building no, built from linked Node objects
+ */
+public class RedBlackTree implements BuildingTree {
     private Node root;
     private static final boolean RED = true;
     private static final boolean BLACK = false;
+    private static final int MAX_HEIGHT = 64; // a left leaning red black tree is at most 2 * log(n + 1) high
+
+    private static final boolean LEFT = true;
+    private static final boolean RIGHT = false;
+
+    private final Node[] stack = new Node[MAX_HEIGHT]; // path of pending nodes of a range scan
+    private final Node[] path = new Node[MAX_HEIGHT];  // path from root of the node being inserted or deleted
+    private final boolean[] directions = new boolean[MAX_HEIGHT]; // direction taken from each node on path
+    private boolean debug = false; // validate the tree after every update
+    private Progress progress = null; // progress of the running building; null if stored executed times are current
+    private Metrics metrics = null;   // counters of rotations and color flips; null if metrics are off
+    private final RangePrinter rangePrinter = new RangePrinter();
 
     public RedBlackTree() {
     }
 
+    // validate bst, subtree size and red black invariants after every update when debug is on
+    @Override
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    // derive the executed time of the running building lazily from progress
+    @Override
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // current executed time of building with building no: key given its stored executed time
+    private int executedTime(int key, int storedExecutedTime) {
+        return progress == null ? storedExecutedTime : progress.executedTime(key, storedExecutedTime);
+    }
+
     private boolean isRed(Node x) {
         if (x == null) return false;
         return x.color == RED;
     }
 
     // check if tree is empty
+    @Override
     public boolean isEmpty() {
         return root == null;
     }
 
+    // no of buildings in tree
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    // no of nodes in subtree rooted at x; 0 if x is null
+    private int size(Node x) {
+        if (x == null) return 0;
+        return x.size;
+    }
+
     // returns the building metadata associated with the key i.e building no
     public Building get(int key) {
         return get(root, key);
@@ -33,106 +87,281 @@ public class RedBlackTree {
     }
 
     // check if red black tree contains building with build no: key
+    @Override
     public boolean contains(int key) {
         return get(key) != null;
     }
 
+    @Override
+    public int getExecutedTime(int key) {
+        Building val = get(key);
+        return val == null ? -1 : executedTime(key, val.getExecutedTime());
+    }
+
+    @Override
+    public int getTotalTime(int key) {
+        Building val = get(key);
+        return val == null ? -1 : val.getTotalTime();
+    }
+
+    @Override
+    public void put(int key, int executedTime, int totalTime) {
+        put(key, new Building(key, executedTime, totalTime));
+    }
+
+    @Override
+    public void setExecutedTime(int key, int executedTime) {
+        Building val = get(key);
+        if (val == null) throw new IllegalArgumentException("building " + key + " not in tree");
+        val.setExecutedTime(executedTime);
+    }
+
     // Insert building into red black tree with building no as key; updates building if key already exists
     public void put(int key, Building val) {
         if (val == null) {
             delete(key);
             return;
         }
-        root = put(root, key, val);
+        if (root == null) {
+            root = new Node(key, val, BLACK);
+            return;
+        }
+
+        // walk down to the node with the key or to the null link where it belongs
+        int top = 0;
+        Node h = root;
+        while (true) {
+            path[top] = h;
+            if (key < h.key) {
+                directions[top++] = LEFT;
+                if (h.left == null) {
+                    h.left = new Node(key, val, RED);
+                    break;
+                }
+                h = h.left;
+            } else if (key > h.key) {
+                directions[top++] = RIGHT;
+                if (h.right == null) {
+                    h.right = new Node(key, val, RED);
+                    break;
+                }
+                h = h.right;
+            } else {
+                h.val = val; // tree shape does not change when updating a building
+                Arrays.fill(path, 0, top + 1, null); // drop the path so it does not keep nodes alive
+                return;
+            }
+        }
+
+        // walk back up the path, fixing up any right-leaning links and subtree sizes
+        while (top > 0) {
+            h = path[--top];
+            path[top] = null;
+            if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+            if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+            if (isRed(h.left) && isRed(h.right)) flipColors(h);
+            h.size = size(h.left) + size(h.right) + 1;
+            attach(top, h);
+        }
         root.color = BLACK;
-        assert check();
+        if (debug) check();
     }
 
-    // insert the key-value pair in the subtree rooted at h
-    private Node put(Node h, int key, Building val) {
-        if (h == null) return new Node(key, val, RED);
+    // insert buildings sorted on building no; an empty tree is built in linear time and a batch which is large
+    // compared to the tree is merged with the existing buildings and the tree is rebuilt in linear time
+    @Override
+    public void putAllSorted(List<Building> buildings) {
+        int count = buildings.size();
+        for (int i = 1; i < count; i++)
+            if (buildings.get(i - 1).getBuildingNo() >= buildings.get(i).getBuildingNo())
+                throw new IllegalArgumentException("buildings not sorted on building no at index " + i);
+        if (count == 0) return;
+        int n = size();
+        int total = n + count;
+        // inserting one by one costs about log(total) per building while a rebuild costs about total
+        if (n > 0 && (long) count * (32 - Integer.numberOfLeadingZeros(total)) < total) {
+            for (Building building : buildings)
+                put(building.getBuildingNo(), new Building(building));
+            return;
+        }
 
-        int cmp = Integer.compare(key, h.key);
-        if (cmp < 0) h.left = put(h.left, key, val);
-        else if (cmp > 0) h.right = put(h.right, key, val);
-        else h.val = val;
+        // merge existing buildings in key order with the batch; batch replaces buildings with the same key
+        Building[] merged = new Building[total];
+        int m = 0;
+        int i = 0;
+        int top = 0;
+        Node x = root;
+        while (x != null || top > 0) {
+            while (x != null) {
+                stack[top++] = x;
+                x = x.left;
+            }
+            x = stack[--top];
+            stack[top] = null;
+            while (i < count && buildings.get(i).getBuildingNo() < x.key)
+                merged[m++] = new Building(buildings.get(i++));
+            if (i < count && buildings.get(i).getBuildingNo() == x.key)
+                merged[m++] = new Building(buildings.get(i++));
+            else
+                merged[m++] = x.val;
+            x = x.right;
+        }
+        while (i < count)
+            merged[m++] = new Building(buildings.get(i++));
 
-        // fix-up any right-leaning links
-        if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
-        if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
-        if (isRed(h.left) && isRed(h.right)) flipColors(h);
+        root = build(merged, 0, m, blackHeight(m));
+        if (debug) check();
+    }
+
+    // build a subtree with the given no of black links on every path from sorted buildings starting at lo; it is
+    // built as a 2-3 tree in which 3-nodes are a black node with a red left child
+    private Node build(Building[] buildings, int lo, int count, int blackHeight) {
+        if (count == 0) return null;
+        long maxChild = maxKeys(blackHeight - 1);
+        if (count - 1 <= 2 * maxChild) {
+            // 2-node: split the remaining buildings evenly
+            int leftCount = count / 2;
+            Node h = new Node(buildings[lo + leftCount].getBuildingNo(), buildings[lo + leftCount], BLACK);
+            h.left = build(buildings, lo, leftCount, blackHeight - 1);
+            h.right = build(buildings, lo + leftCount + 1, count - 1 - leftCount, blackHeight - 1);
+            h.size = count;
+            return h;
+        }
+        // 3-node: split the remaining buildings evenly in three
+        int rest = count - 2;
+        int first = rest / 3 + (rest % 3 > 0 ? 1 : 0);
+        int second = rest / 3 + (rest % 3 > 1 ? 1 : 0);
+        Node x = new Node(buildings[lo + first].getBuildingNo(), buildings[lo + first], RED);
+        x.left = build(buildings, lo, first, blackHeight - 1);
+        x.right = build(buildings, lo + first + 1, second, blackHeight - 1);
+        x.size = first + second + 1;
+        int k = lo + first + 1 + second;
+        Node h = new Node(buildings[k].getBuildingNo(), buildings[k], BLACK);
+        h.left = x;
+        h.right = build(buildings, k + 1, rest - first - second, blackHeight - 1);
+        h.size = count;
         return h;
     }
 
-    // deletes building with specified key i.e building no
-    public void delete(int key) {
-        if (!contains(key)) return;
+    // largest black height of a tree of count nodes, whose 2-3 tree has only 2-nodes above the bottom level
+    private static int blackHeight(int count) {
+        return 31 - Integer.numberOfLeadingZeros(count + 1);
+    }
+
+    // largest no of keys in a 2-3 tree with the given black height i.e one with only 3-nodes
+    private static long maxKeys(int blackHeight) {
+        long max = 1;
+        for (int i = 0; i < blackHeight; i++) max *= 3;
+        return max - 1;
+    }
+
+    // deletes building with specified key i.e building no in a single walk down the tree; returns false if the
+    // building is not present
+    @Override
+    public boolean delete(int key) {
+        if (root == null) return false;
 
         // if both children of root are black, set root to red
         if (!isRed(root.left) && !isRed(root.right))
             root.color = RED;
 
-        root = delete(root, key);
-        if (!isEmpty()) root.color = BLACK;
-        assert check();
-    }
-
-    // delete the node with the given key rooted at h
-    private Node delete(Node h, int key) {
-        assert get(h, key) != null;
-
-        if (key < h.key) {
-            if (!isRed(h.left) && !isRed(h.left.left))
-                h = moveRedLeft(h);
-            h.left = delete(h.left, key);
-        } else {
-            if (isRed(h.left))
-                h = rotateRight(h);
-            if (key == h.key && (h.right == null))
-                return null;
-            if (!isRed(h.right) && !isRed(h.right.left))
-                h = moveRedRight(h);
-            if (key == h.key) {
-                Node x = min(h.right);
-                h.key = x.key;
-                h.val = x.val;
-                h.right = deleteMin(h.right);
-            } else h.right = delete(h.right, key);
+        // walk down keeping the current node or its left child red, so that the node to be removed is red
+        boolean found = false;
+        int top = 0;
+        Node h = root;
+        while (true) {
+            if (key < h.key) {
+                if (h.left == null) break; // key is not present
+                if (!isRed(h.left) && !isRed(h.left.left)) {
+                    h = moveRedLeft(h);
+                    attach(top, h);
+                }
+                path[top] = h;
+                directions[top++] = LEFT;
+                h = h.left;
+            } else {
+                if (isRed(h.left)) {
+                    h = rotateRight(h);
+                    attach(top, h);
+                }
+                if (key == h.key && (h.right == null)) {
+                    attach(top, null);
+                    found = true;
+                    break;
+                }
+                if (h.right == null) break; // key is not present
+                if (!isRed(h.right) && !isRed(h.right.left)) {
+                    h = moveRedRight(h);
+                    attach(top, h);
+                }
+                path[top] = h;
+                directions[top++] = RIGHT;
+                if (key == h.key) {
+                    // replace the building with its successor and remove the node of the successor instead
+                    Node target = h;
+                    h = h.right;
+                    while (h.left != null) {
+                        if (!isRed(h.left) && !isRed(h.left.left)) {
+                            h = moveRedLeft(h);
+                            attach(top, h);
+                        }
+                        path[top] = h;
+                        directions[top++] = LEFT;
+                        h = h.left;
+                    }
+                    target.key = h.key;
+                    target.val = h.val;
+                    attach(top, null);
+                    found = true;
+                    break;
+                }
+                h = h.right;
+            }
         }
-        return balance(h);
-    }
 
-    // delete the node with the minimum key rooted at h
-    private Node deleteMin(Node h) {
-        if (h.left == null)
-            return null;
-
-        if (!isRed(h.left) && !isRed(h.left.left))
-            h = moveRedLeft(h);
+        // walk back up the path, restoring the red black invariants and subtree sizes
+        while (top > 0) {
+            h = balance(path[--top]);
+            path[top] = null;
+            attach(top, h);
+        }
+        if (!isEmpty()) root.color = BLACK;
+        if (debug) check();
+        return found;
+    }
 
-        h.left = deleteMin(h.left);
-        return balance(h);
+    // link x as the child of the node at depth - 1 on the path in the direction taken from it; root if depth is 0
+    private void attach(int depth, Node x) {
+        if (depth == 0) root = x;
+        else if (directions[depth - 1] == LEFT) path[depth - 1].left = x;
+        else path[depth - 1].right = x;
     }
 
     // make left leaning link lean to the right
     private Node rotateRight(Node h) {
         assert (h != null) && isRed(h.left);
+        if (metrics != null) metrics.rotations++;
         Node x = h.left;
         h.left = x.right;
         x.right = h;
         x.color = x.right.color;
         x.right.color = RED;
+        x.size = h.size;
+        h.size = size(h.left) + size(h.right) + 1;
         return x;
     }
 
     // make right leaning link lean to the left
     private Node rotateLeft(Node h) {
         assert (h != null) && isRed(h.right);
+        if (metrics != null) metrics.rotations++;
         Node x = h.right;
         h.right = x.left;
         x.left = h;
         x.color = x.left.color;
         x.left.color = RED;
+        x.size = h.size;
+        h.size = size(h.left) + size(h.right) + 1;
         return x;
     }
 
@@ -141,6 +370,7 @@ public class RedBlackTree {
         assert (h != null) && (h.left != null) && (h.right != null);
         assert (!isRed(h) && isRed(h.left) && isRed(h.right))
                 || (isRed(h) && !isRed(h.left) && !isRed(h.right));
+        if (metrics != null) metrics.colorFlips++;
         h.color = !h.color;
         h.left.color = !h.left.color;
         h.right.color = !h.right.color;
@@ -151,6 +381,7 @@ public class RedBlackTree {
     private Node moveRedLeft(Node h) {
         assert (h != null);
         assert isRed(h) && !isRed(h.left) && !isRed(h.left.left);
+        if (metrics != null) metrics.moveRedLefts++;
 
         flipColors(h);
         if (isRed(h.right.left)) {
@@ -166,6 +397,7 @@ public class RedBlackTree {
     private Node moveRedRight(Node h) {
         assert (h != null);
         assert isRed(h) && !isRed(h.right) && !isRed(h.right.left);
+        if (metrics != null) metrics.moveRedRights++;
         flipColors(h);
         if (isRed(h.left.left)) {
             h = rotateRight(h);
@@ -180,26 +412,21 @@ public class RedBlackTree {
         if (isRed(h.right)) h = rotateLeft(h);
         if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
         if (isRed(h.left) && isRed(h.right)) flipColors(h);
+        h.size = size(h.left) + size(h.right) + 1;
         return h;
     }
 
-    // smallest key in subtree rooted at x
-    private Node min(Node x) {
-        assert x != null;
-        if (x.left == null) return x;
-        else return min(x.left);
-    }
-
-    // largest key in subtree rooted at x
-    private Node max(Node x) {
-        assert x != null;
-        if (x.right == null) return x;
-        else return max(x.right);
+    // check if bst, subtree size and red black invariants have been maintained
+    private void check() {
+        if (!isBST() || !isSizeConsistent(root) || !isBalanced())
+            throw new IllegalStateException("red black tree invariants violated");
     }
 
-    // check if bst and red black invariants have been maintained
-    private boolean check() {
-        return isBST() && isBalanced();
+    // check that size of every subtree is consistent with its children
+    private boolean isSizeConsistent(Node x) {
+        if (x == null) return true;
+        if (x.size != size(x.left) + size(x.right) + 1) return false;
+        return isSizeConsistent(x.left) && isSizeConsistent(x.right);
     }
 
     // check whether binary tree satisfies symmetric order
@@ -231,42 +458,141 @@ public class RedBlackTree {
         return isBalanced(x.left, black) && isBalanced(x.right, black);
     }
 
+    // no of buildings with building no lesser than key
+    @Override
+    public int rank(int key) {
+        int rank = 0;
+        Node x = root;
+        while (x != null) {
+            if (key < x.key) {
+                x = x.left;
+            } else if (key > x.key) {
+                rank += 1 + size(x.left);
+                x = x.right;
+            } else {
+                return rank + size(x.left);
+            }
+        }
+        return rank;
+    }
+
+    // building no with the given rank i.e the building no which has rank smaller building nos
+    @Override
+    public int select(int rank) {
+        if (rank < 0 || rank >= size())
+            throw new IllegalArgumentException("rank out of range: " + rank);
+        Node x = root;
+        while (true) {
+            int leftSize = size(x.left);
+            if (rank < leftSize) {
+                x = x.left;
+            } else if (rank > leftSize) {
+                rank -= leftSize + 1;
+                x = x.right;
+            } else {
+                return x.key;
+            }
+        }
+    }
+
+    // no of buildings with building no in the range of low and hi
+    @Override
+    public int countInRange(int low, int hi) {
+        if (low > hi) return 0;
+        return rank(hi) - rank(low) + (contains(hi) ? 1 : 0);
+    }
+
     //print a particular node(building)
-    public void print(int key) {
+    @Override
+    public void print(int key, OutputWriter out) throws IOException {
         Building val = get(key);
         if (val == null)
-            System.out.println("(0,0,0)"); // output if key doesn't exist
+            out.writeBuilding(0, 0, 0); // output if key doesn't exist
         else
-            System.out.println("(" + val.getBuildingNo() + "," + val.getExecutedTime() + "," + val.getTotalTime() + ")");
+            out.writeBuilding(val.getBuildingNo(), executedTime(key, val.getExecutedTime()), val.getTotalTime());
+        out.newLine();
+    }
+
+    // visit buildings with keys(building no) in the range of low and hi in ascending order; walks the tree with an
+    // explicit stack so a range of k buildings costs O(log n + k) without recursion or allocation per node
+    @Override
+    public void forEachInRange(int low, int hi, BuildingVisitor visitor) throws IOException {
+        int top = 0;
+        Node x = root;
+        while (true) {
+            // push the path to the smallest key not lesser than low, skipping subtrees with keys lesser than low
+            while (x != null) {
+                if (x.key < low) {
+                    x = x.right;
+                } else {
+                    stack[top++] = x;
+                    x = x.left;
+                }
+            }
+            if (top == 0)
+                return;
+            x = stack[--top];
+            stack[top] = null;
+            if (x.key > hi) {
+                // every remaining key is higher than hi
+                while (top > 0) stack[--top] = null;
+                return;
+            }
+            visitor.visit(x.key, executedTime(x.key, x.val.getExecutedTime()), x.val.getTotalTime());
+            x = x.right;
+        }
     }
 
-    //traverse only those subtrees that have keys(building no) in the range of low and hi and print building
-    private void print(Node x, int low, int hi) {
-        if (x == null)
+    // visit buildings in any of the sorted disjoint ranges in ascending order; the walk of forEachInRange moves on to
+    // the next range instead of stopping, so the ranges share the path from the root and no node is visited twice
+    @Override
+    public void forEachInRanges(int[] lows, int[] highs, int count, BuildingVisitor visitor) throws IOException {
+        if (count == 0)
             return;
-        // skip left subtree traversal if key is lesser than low
-        if (x.key > low)
-            print(x.left, low, hi);
-        if (x.key >= low && x.key <= hi) {
-            Building val = x.val;
-            // check for max element in left subtree is in the given range and print ','
-            if (x.left != null && max(x.left).key >= low)
-                System.out.print(",");
-            System.out.print("(" + val.getBuildingNo() + "," + val.getExecutedTime() + "," + val.getTotalTime() + ")");
-            // check for min element in right subtree is in the given range and print ','
-            if (x.right != null && min(x.right).key <= hi)
-                System.out.print(",");
+        int range = 0;
+        int low = lows[0];
+        int hi = highs[0];
+        int top = 0;
+        Node x = root;
+        while (true) {
+            while (x != null) {
+                if (x.key < low) {
+                    x = x.right;
+                } else {
+                    stack[top++] = x;
+                    x = x.left;
+                }
+            }
+            if (top == 0)
+                return;
+            x = stack[--top];
+            stack[top] = null;
+            if (x.key > hi) {
+                // skip the ranges below the key
+                do {
+                    range++;
+                } while (range < count && highs[range] < x.key);
+                if (range == count) {
+                    while (top > 0) stack[--top] = null;
+                    return;
+                }
+                low = lows[range];
+                hi = highs[range];
+            }
+            // pending nodes pushed for an earlier range may lie before the current range
+            if (x.key >= low)
+                visitor.visit(x.key, executedTime(x.key, x.val.getExecutedTime()), x.val.getTotalTime());
+            x = x.right;
         }
-        // skip right subtree traversal if key is higher than hi
-        if (x.key < hi)
-            print(x.right, low, hi);
     }
 
     //prints all nodes(buildings) in the range of low and hi
-    public void print(int low, int hi) {
+    @Override
+    public void print(int low, int hi, OutputWriter out) throws IOException {
         if (root == null)
-            System.out.print("(0,0,0)");
+            out.writeBuilding(0, 0, 0);
         else
-            print(root, low, hi);
+            forEachInRange(low, hi, rangePrinter.reset(out));
+        out.newLine();
     }
 }
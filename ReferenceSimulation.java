@@ -0,0 +1,184 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Simulation of a city one day at a time with library collections, kept as the reference of CitySimulation. Every
+ * running building is advanced every day, buildings are held in a TreeMap and a PriorityQueue and instructions are
+ * split with String methods, so it shares no code with the optimized paths but Building. It is slow but simple
+ * enough to be checked by reading; the differential runner compares the output of every engine mode against it.
+ */
+public class ReferenceSimulation {
+    private final List<Building> inventory;
+    private final int crewCount;
+
+    private final TreeMap<Integer, Building> buildings = new TreeMap<>();
+    private final PriorityQueue<Building> heap = new PriorityQueue<>();
+    private final List<Building> pendingHeapInserts = new ArrayList<>();
+
+    public ReferenceSimulation(List<Building> inventory, int crewCount) {
+        this.inventory = inventory;
+        this.crewCount = crewCount;
+    }
+
+    // simulate the instruction file at input and write the output file at output
+    public void run(Path input, Path output) throws IOException {
+        for (Building building : inventory) {
+            Building copy = new Building(building);
+            buildings.put(copy.getBuildingNo(), copy);
+            heap.add(copy);
+        }
+        Building[] crews = new Building[crewCount]; // building of every crew; null if idle
+        int[] buildTimers = new int[crewCount];
+        int busyCrews = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input);
+             BufferedWriter writer = Files.newBufferedWriter(output)) {
+            String next = readLine(reader); // line after the instruction waiting for its day
+            String[] instruction = null;
+            int globalTime = 0;
+            while (next != null || !heap.isEmpty() || busyCrews > 0) {
+                if (instruction == null && next != null) {
+                    instruction = split(next);
+                    next = readLine(reader);
+                }
+                while (instruction != null && Integer.parseInt(instruction[0]) == globalTime) {
+                    execute(instruction, writer);
+                    instruction = next == null ? null : split(next);
+                    next = next == null ? null : readLine(reader);
+                }
+                boolean switching = false;
+                List<Integer> completed = new ArrayList<>();
+                for (int crew = 0; crew < crewCount; crew++) {
+                    Building building = crews[crew];
+                    if (building == null) {
+                        switching = true;
+                    } else if (building.hasCompletedExecution()) {
+                        completed.add(building.getBuildingNo());
+                        buildings.remove(building.getBuildingNo());
+                        crews[crew] = null;
+                        busyCrews--;
+                        switching = true;
+                    } else if (buildTimers[crew] % 5 == 0) {
+                        heap.add(building);
+                        crews[crew] = null;
+                        busyCrews--;
+                        switching = true;
+                    }
+                }
+                completed.sort(null);
+                for (int buildingNo : completed) {
+                    writer.write("(" + buildingNo + "," + globalTime + ")");
+                    writer.newLine();
+                }
+                if (switching) {
+                    heap.addAll(pendingHeapInserts);
+                    pendingHeapInserts.clear();
+                    for (int crew = 0; crew < crewCount && !heap.isEmpty(); crew++) {
+                        if (crews[crew] == null) {
+                            crews[crew] = heap.poll();
+                            buildTimers[crew] = 0;
+                            busyCrews++;
+                        }
+                    }
+                }
+                for (int crew = 0; crew < crewCount; crew++) {
+                    if (crews[crew] != null) {
+                        crews[crew].setExecutedTime(crews[crew].getExecutedTime() + 1);
+                        buildTimers[crew]++;
+                    }
+                }
+                globalTime++;
+            }
+        }
+    }
+
+    // execute instruction of the form {time, command, params...}
+    private void execute(String[] instruction, BufferedWriter writer) throws IOException {
+        int[] params = new int[instruction.length - 2];
+        for (int i = 0; i < params.length; i++)
+            params[i] = Integer.parseInt(instruction[i + 2]);
+        String command = instruction[1];
+        if (command.equals("Insert")) {
+            if (buildings.containsKey(params[0]))
+                return; // building is still under construction
+            Building building = new Building(params[0], params[1]);
+            buildings.put(building.getBuildingNo(), building);
+            pendingHeapInserts.add(building);
+            return;
+        }
+        if (command.equals("PrintBuilding") && params.length == 1) {
+            writer.write(format(buildings.get(params[0])));
+        } else if (command.equals("PrintBuilding")) {
+            if (buildings.isEmpty())
+                writer.write(format(null));
+            else {
+                StringBuilder line = new StringBuilder();
+                for (Building building : range(params[0], params[1]).values()) {
+                    if (line.length() > 0)
+                        line.append(',');
+                    line.append(format(building));
+                }
+                writer.write(line.toString());
+            }
+        } else if (command.equals("CountBuildings")) {
+            writer.write(Integer.toString(range(params[0], params[1]).size()));
+        } else if (command.equals("RankBuilding")) {
+            writer.write(Integer.toString(buildings.headMap(params[0], false).size()));
+        } else if (command.equals("SelectBuilding")) {
+            Building selected = null;
+            int k = params[0];
+            for (Map.Entry<Integer, Building> entry : buildings.entrySet()) {
+                if (--k == 0) {
+                    selected = entry.getValue();
+                    break;
+                }
+            }
+            writer.write(format(selected));
+        } else {
+            return; // unknown commands are ignored
+        }
+        writer.newLine();
+    }
+
+    private NavigableMap<Integer, Building> range(int low, int hi) {
+        if (low > hi)
+            return new TreeMap<>();
+        return buildings.subMap(low, true, hi, true);
+    }
+
+    private static String format(Building building) {
+        if (building == null)
+            return "(0,0,0)";
+        return "(" + building.getBuildingNo() + "," + building.getExecutedTime() + "," + building.getTotalTime() + ")";
+    }
+
+    // next non blank line; null at end of file
+    private static String readLine(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        while (line != null && line.trim().isEmpty())
+            line = reader.readLine();
+        return line;
+    }
+
+    // split "time: Command(a,b)" into {time, Command, a, b}
+    private static String[] split(String line) {
+        int colon = line.indexOf(':');
+        int open = line.indexOf('(', colon);
+        int close = line.indexOf(')', open);
+        String[] params = open < 0 || close < 0 ? new String[0] : line.substring(open + 1, close).split(",");
+        String[] fields = new String[params.length + 2];
+        fields[0] = line.substring(0, colon).trim();
+        fields[1] = (open < 0 ? line.substring(colon + 1) : line.substring(colon + 1, open)).trim();
+        for (int i = 0; i < params.length; i++)
+            fields[i + 2] = params[i].trim();
+        return fields;
+    }
+}
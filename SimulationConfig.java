@@ -0,0 +1,179 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options of a simulation and factory of simulations configured by them. A config is only read once
+ * parsed, so one config can create the simulations of many cities concurrently.
+ */
+public class SimulationConfig {
+    // flush output after every line only when asked to, e.g. to follow the output file while it is written
+    private int flushPolicy = OutputWriter.FLUSH_WHEN_FULL;
+    private boolean arrayTree = false;   // store buildings in the pooled array backed tree instead of linked nodes
+    private boolean persistentTree = false; // store buildings in the path copying tree which publishes snapshots
+    private boolean debug = false;       // validate the red black tree after every update
+    private boolean bucketQueue = false; // schedule buildings with the bucket queue instead of the heap
+    private int arity = MinHeap.DEFAULT_ARITY; // no of children of every heap node
+    private int crewCount = 1; // no of buildings constructed at the same time
+    private boolean metrics = false; // count hot paths and time of every simulation
+    private Path checkpoint = null;  // file of periodic checkpoints; null if checkpoints are off
+    private long checkpointInterval = 1000000; // no of instructions between checkpoints
+    private Path resume = null;      // checkpoint to resume from; null to start from the beginning
+    private long monitorInterval = 0; // ms between progress reports read from snapshots; 0 if monitoring is off
+    private List<Building> inventory = new ArrayList<>(); // buildings under construction when the simulation starts
+
+    // apply a simulation option; returns false if the argument is not a simulation option
+    public boolean parse(String arg) throws IOException {
+        if (arg.equals("--flush=line"))
+            flushPolicy = OutputWriter.FLUSH_EVERY_LINE;
+        else if (arg.equals("--flush=full"))
+            flushPolicy = OutputWriter.FLUSH_WHEN_FULL;
+        else if (arg.equals("--tree=array")) {
+            arrayTree = true;
+            persistentTree = false;
+        } else if (arg.equals("--tree=pointer")) {
+            arrayTree = false;
+            persistentTree = false;
+        } else if (arg.equals("--tree=persistent")) {
+            arrayTree = false;
+            persistentTree = true;
+        } else if (arg.startsWith("--monitor="))
+            monitorInterval = Long.parseLong(arg.substring("--monitor=".length()));
+        else if (arg.equals("--scheduler=bucket"))
+            bucketQueue = true;
+        else if (arg.equals("--scheduler=heap"))
+            bucketQueue = false;
+        else if (arg.startsWith("--arity="))
+            arity = Integer.parseInt(arg.substring("--arity=".length()));
+        else if (arg.startsWith("--crews="))
+            crewCount = Integer.parseInt(arg.substring("--crews=".length()));
+        else if (arg.startsWith("--checkpoint="))
+            checkpoint = Paths.get(arg.substring("--checkpoint=".length()));
+        else if (arg.startsWith("--checkpoint-every="))
+            checkpointInterval = Long.parseLong(arg.substring("--checkpoint-every=".length()));
+        else if (arg.startsWith("--resume="))
+            resume = Paths.get(arg.substring("--resume=".length()));
+        else if (arg.equals("--metrics"))
+            metrics = true;
+        else if (arg.equals("--debug"))
+            debug = true;
+        else if (arg.startsWith("--inventory="))
+            inventory = readInventory(Paths.get(arg.substring("--inventory=".length())));
+        else
+            return false;
+        return true;
+    }
+
+    public int getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public int getCrewCount() {
+        return crewCount;
+    }
+
+    public List<Building> getInventory() {
+        return inventory;
+    }
+
+    // check if simulations write or resume from a checkpoint file, which only works for a single city
+    public boolean usesCheckpoint() {
+        return checkpoint != null || resume != null;
+    }
+
+    // check if simulations report their progress to stderr, which only makes sense for a single city
+    public boolean usesMonitor() {
+        return monitorInterval > 0;
+    }
+
+    // new simulation with its own red black tree and heap
+    public CitySimulation newSimulation() throws IOException {
+        if (monitorInterval > 0 && !persistentTree)
+            throw new IllegalArgumentException("--monitor needs --tree=persistent");
+        BuildingTree redBlackTree = persistentTree ? new PersistentRedBlackTree()
+                : arrayTree ? new ArrayRedBlackTree() : new RedBlackTree();
+        redBlackTree.setDebug(debug);
+        int capacity = Math.max(inventory.size(), MinHeap.DEFAULT_CAPACITY);
+        BuildingQueue minHeap = bucketQueue ? new BucketQueue(capacity) : new MinHeap(capacity, arity);
+        CitySimulation simulation = new CitySimulation(redBlackTree, minHeap, inventory, crewCount);
+        if (metrics)
+            simulation.setMetrics(new Metrics());
+        if (checkpoint != null)
+            simulation.setCheckpoint(checkpoint, checkpointInterval);
+        if (resume != null)
+            simulation.resume(Checkpoint.read(resume));
+        return simulation;
+    }
+
+    // simulate the instruction file at input and write the output file at output
+    public CitySimulation run(Path input, Path output) throws IOException {
+        CitySimulation simulation = newSimulation();
+        SnapshotMonitor monitor = monitorInterval > 0
+                ? new SnapshotMonitor(simulation, monitorInterval, System.err) : null;
+        try {
+            simulation.run(input, output, flushPolicy);
+        } finally {
+            if (monitor != null)
+                monitor.close();
+        }
+        return simulation;
+    }
+
+    // simulate the instructions of source, such as a cursor of an instruction store replayed in memory
+    public CitySimulation run(InstructionSource source, Path output) throws IOException {
+        CitySimulation simulation = newSimulation();
+        simulation.run(source, output, flushPolicy);
+        return simulation;
+    }
+
+    // read buildings of a warm start inventory; the inventory lists building tuples (buildingNo,executedTime,totalTime)
+    // sorted on building no, in the format written by PrintBuilding
+    private static List<Building> readInventory(Path path) throws IOException {
+        List<Building> buildings = new ArrayList<>();
+        int[] fields = new int[3];
+        int field = 0;
+        long value = -1;          // -1 while not reading a number
+        boolean negative = false; // check if the number being read follows a minus sign
+        boolean minus = false;    // check if the last character was a minus sign
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            int c;
+            do {
+                c = reader.read();
+                if (c >= '0' && c <= '9') {
+                    if (value < 0) {
+                        value = 0;
+                        negative = minus;
+                    }
+                    value = value * 10 + (c - '0');
+                    if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE))
+                        throw new IllegalArgumentException("number out of range in building tuple "
+                                + (buildings.size() + 1) + " of inventory " + path);
+                } else if (value >= 0) {
+                    fields[field++] = (int) (negative ? -value : value);
+                    value = -1;
+                    if (field == fields.length) {
+                        buildings.add(toBuilding(fields, path));
+                        field = 0;
+                    }
+                }
+                minus = c == '-';
+            } while (c != -1);
+        }
+        if (field != 0)
+            throw new IllegalArgumentException("incomplete building tuple at the end of inventory " + path);
+        return buildings;
+    }
+
+    // building of an inventory tuple; times can't be negative and a building in the inventory is not finished yet, as
+    // a building only completes on the day its executed time reaches its total time
+    private static Building toBuilding(int[] fields, Path path) {
+        if (fields[1] < 0 || fields[1] >= fields[2])
+            throw new IllegalArgumentException("invalid building tuple (" + fields[0] + "," + fields[1] + ","
+                    + fields[2] + ") in inventory " + path + ": times must be 0 <= executed time < total time");
+        return new Building(fields[0], fields[1], fields[2]);
+    }
+}
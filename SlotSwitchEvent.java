@@ -0,0 +1,25 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a crew taking the next building from the building queue
+ */
+@Name("risingCity.SlotSwitch")
+@Label("Slot Switch")
+@Category("Rising City")
+@Description("A crew took the next building to construct for a slot of 5 days")
+public class SlotSwitchEvent extends jdk.jfr.Event {
+    @Label("Crew")
+    public int crew;
+
+    @Label("Building No")
+    public int buildingNo;
+
+    @Label("Executed Time")
+    public int executedTime;
+
+    @Label("Global Time")
+    public int globalTime;
+}
@@ -0,0 +1,50 @@
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the progress of a running simulation from its snapshots on a background thread: every interval it
+ * prints the global time, the no of buildings and the buildings being constructed like
+ * "day 120: 4000 buildings, constructing (17,3,25)(42,0,9)". It only reads published snapshots, so the simulation
+ * never waits for it; nothing is printed before the simulation has loaded its starting buildings.
+ */
+public class SnapshotMonitor implements Closeable {
+    private final CitySimulation simulation;
+    private final PrintStream out;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // report on simulation to out every interval ms; the simulation must have a PersistentRedBlackTree
+    public SnapshotMonitor(CitySimulation simulation, long interval, PrintStream out) {
+        if (!simulation.publishesSnapshots())
+            throw new IllegalArgumentException("simulation does not publish snapshots");
+        this.simulation = simulation;
+        this.out = out;
+        executor.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void report() {
+        PersistentRedBlackTree.Snapshot snapshot = simulation.getSnapshot();
+        if (snapshot == null) return; // simulation has not started yet
+        StringBuilder report = new StringBuilder();
+        report.append("day ").append(snapshot.getTime()).append(": ").append(snapshot.size()).append(" buildings");
+        int[] running = snapshot.getRunningBuildingNos();
+        report.append(running.length == 0 ? ", no building under construction" : ", constructing ");
+        for (int buildingNo : running) {
+            report.append('(').append(buildingNo).append(',').append(snapshot.getExecutedTime(buildingNo))
+                    .append(',').append(snapshot.getTotalTime(buildingNo)).append(')');
+        }
+        out.println(report);
+    }
+
+    // stop reporting
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
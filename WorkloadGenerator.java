@@ -0,0 +1,161 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Seeded generator of instruction files. Every instruction is drawn with the configured weights of the instruction
+ * kinds, is 'min gap' to 'max gap' days after the previous one, and inserts a building no which was never inserted
+ * before, so the same options and seed always write the same file.
+ *
+ * usage: java WorkloadGenerator output file [options]
+ *   --instructions=n  no of instructions (1000)
+ *   --seed=s          seed of the random generator (1)
+ *   --insert=w --print=w --range=w --count=w --rank=w --select=w
+ *                     weights of Insert, PrintBuilding(a), PrintBuilding(a,b), CountBuildings, RankBuilding and
+ *                     SelectBuilding (50, 35, 15, 0, 0, 0)
+ *   --keys=scattered|sequential  order of inserted building nos (scattered)
+ *   --targets=uniform|recent     buildings printed are any inserted building, or one of the last 64 (uniform)
+ *   --min-gap=d --max-gap=d      days between instructions (1, 10); 0 puts instructions on the same day
+ *   --max-total=t                total time of inserted buildings is 1 to t days (20)
+ *   --range-width=w              width of printed and counted ranges of building nos (1048576)
+ */
+public class WorkloadGenerator {
+    private static final long PRIME = 2147483647L; // scattered building nos are a permutation of 1 .. PRIME - 1
+    private static final int RECENT = 64;
+
+    private long seed = 1;
+    private int instructions = 1000;
+    private int insertWeight = 50;
+    private int printWeight = 35;
+    private int rangeWeight = 15;
+    private int countWeight = 0;
+    private int rankWeight = 0;
+    private int selectWeight = 0;
+    private boolean sequentialKeys = false;
+    private boolean recentTargets = false;
+    private int minGap = 1;
+    private int maxGap = 10;
+    private int maxTotalTime = 20;
+    private int rangeWidth = 1 << 20;
+
+    public static void main(String[] args) {
+        try {
+            if (args.length == 0)
+                throw new IllegalArgumentException("no output file");
+            WorkloadGenerator generator = new WorkloadGenerator();
+            for (int i = 1; i < args.length; i++) {
+                if (!generator.parse(args[i]))
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+            generator.write(Paths.get(args[0]));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // apply a generator option; returns false if the argument is not a generator option
+    public boolean parse(String arg) {
+        int eq = arg.indexOf('=');
+        if (!arg.startsWith("--") || eq < 0)
+            return false;
+        String name = arg.substring(2, eq);
+        String value = arg.substring(eq + 1);
+        switch (name) {
+            case "instructions": instructions = Integer.parseInt(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            case "insert": insertWeight = Integer.parseInt(value); break;
+            case "print": printWeight = Integer.parseInt(value); break;
+            case "range": rangeWeight = Integer.parseInt(value); break;
+            case "count": countWeight = Integer.parseInt(value); break;
+            case "rank": rankWeight = Integer.parseInt(value); break;
+            case "select": selectWeight = Integer.parseInt(value); break;
+            case "keys":
+                if (!value.equals("scattered") && !value.equals("sequential"))
+                    throw new IllegalArgumentException("unknown key order: " + value);
+                sequentialKeys = value.equals("sequential");
+                break;
+            case "targets":
+                if (!value.equals("uniform") && !value.equals("recent"))
+                    throw new IllegalArgumentException("unknown target distribution: " + value);
+                recentTargets = value.equals("recent");
+                break;
+            case "min-gap": minGap = Integer.parseInt(value); break;
+            case "max-gap": maxGap = Integer.parseInt(value); break;
+            case "max-total": maxTotalTime = Integer.parseInt(value); break;
+            case "range-width": rangeWidth = Integer.parseInt(value); break;
+            default: return false;
+        }
+        return true;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setInstructions(int instructions) {
+        this.instructions = instructions;
+    }
+
+    // write the instruction file
+    public void write(Path path) throws IOException {
+        int totalWeight = insertWeight + printWeight + rangeWeight + countWeight + rankWeight + selectWeight;
+        if (insertWeight <= 0 || totalWeight <= 0)
+            throw new IllegalArgumentException("insert weight must be positive");
+        if (minGap < 0 || maxGap < minGap)
+            throw new IllegalArgumentException("gaps out of range: " + minGap + " " + maxGap);
+        if (maxTotalTime < 1)
+            throw new IllegalArgumentException("max total time must be positive: " + maxTotalTime);
+        Random random = new Random(seed);
+        int time = 0;
+        int inserted = 0; // no of buildings inserted so far
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (int i = 0; i < instructions; i++) {
+                time += minGap + random.nextInt(maxGap - minGap + 1);
+                writer.write(Integer.toString(time));
+                writer.write(": ");
+                int kind = random.nextInt(totalWeight);
+                if (inserted == 0 || (kind -= insertWeight) < 0) {
+                    writer.write("Insert(" + buildingNo(inserted++) + "," + (1 + random.nextInt(maxTotalTime)) + ")");
+                } else if ((kind -= printWeight) < 0) {
+                    writer.write("PrintBuilding(" + target(random, inserted) + ")");
+                } else if ((kind -= rangeWeight) < 0) {
+                    int low = target(random, inserted);
+                    writer.write("PrintBuilding(" + low + "," + high(low) + ")");
+                } else if ((kind -= countWeight) < 0) {
+                    int low = target(random, inserted);
+                    writer.write("CountBuildings(" + low + "," + high(low) + ")");
+                } else if ((kind -= rankWeight) < 0) {
+                    writer.write("RankBuilding(" + target(random, inserted) + ")");
+                } else {
+                    writer.write("SelectBuilding(" + (1 + random.nextInt(RECENT)) + ")");
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    // i-th building no inserted
+    private int buildingNo(int i) {
+        return sequentialKeys ? i + 1 : scatteredBuildingNo(i);
+    }
+
+    // building no of a building inserted before
+    private int target(Random random, int inserted) {
+        if (recentTargets)
+            return buildingNo(inserted - 1 - random.nextInt(Math.min(inserted, RECENT)));
+        return buildingNo(random.nextInt(inserted));
+    }
+
+    // upper end of a range starting at low
+    private int high(int low) {
+        return (int) Math.min((long) low + rangeWidth, Integer.MAX_VALUE);
+    }
+
+    // i-th distinct building no in a scattered order
+    public static int scatteredBuildingNo(int i) {
+        return (int) ((i + 1) * 2654435761L % PRIME);
+    }
+}
@@ -0,0 +1,46 @@
+package risingcity.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import risingcity.Building;
+
+/**
+ * Building.compareTo over adjacent pairs of 1024 buildings with few distinct executed times, so about half of the
+ * comparisons fall through to the building no.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildingBenchmark {
+    private final Building[] buildings = new Building[1024];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < buildings.length; i++)
+            buildings[i] = new Building(random.nextInt(1 << 20), random.nextInt(2), 100);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int sum = 0;
+        for (int i = 1; i < buildings.length; i++)
+            sum += buildings[i - 1].compareTo(buildings[i]);
+        return sum;
+    }
+}
@@ -0,0 +1,65 @@
+package risingcity.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import risingcity.BucketQueue;
+import risingcity.BuildingQueue;
+import risingcity.MinHeap;
+
+/**
+ * Heap operations at a steady no of buildings: add and remove of a building, and a scheduling slot, which moves the
+ * min building down the heap by 5 days through heapifyDown, for every arity and the bucket queue.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinHeapBenchmark {
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    // heap arity; 0 selects the bucket queue
+    @Param({"2", "4", "8", "16", "0"})
+    public int arity;
+
+    private BuildingQueue queue;
+    private int nextBuildingNo;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = arity == 0 ? new BucketQueue(size) : new MinHeap(size, arity);
+        nextBuildingNo = 0;
+        for (int i = 0; i < size; i++)
+            queue.add(TraceGenerator.buildingNo(nextBuildingNo++), i % 1000, Integer.MAX_VALUE);
+    }
+
+    // insert a building with executed time 0 and remove the min building
+    @Benchmark
+    public int addRemove() {
+        queue.add(TraceGenerator.buildingNo(nextBuildingNo++), 0, Integer.MAX_VALUE);
+        return queue.remove();
+    }
+
+    // run the min building for a slot; executed times grow without bound so every slot sifts down
+    @Benchmark
+    public int slot() {
+        int buildingNo = queue.peekBuildingNo();
+        queue.increaseKey(buildingNo, 5);
+        return buildingNo;
+    }
+}
@@ -0,0 +1,52 @@
+package risingcity.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import risingcity.Instruction;
+import risingcity.InstructionParser;
+
+/**
+ * Parsing a generated instruction file end to end without simulating it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int instructions;
+
+    private Path trace;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = TraceGenerator.temporaryTrace(instructions, 42);
+    }
+
+    @Benchmark
+    public long parse() throws IOException {
+        long sum = 0;
+        Instruction instruction = new Instruction();
+        try (InstructionParser parser = new InstructionParser(trace)) {
+            while (parser.next(instruction))
+                sum += instruction.getTime() + instruction.getFirstParam();
+        }
+        return sum;
+    }
+}
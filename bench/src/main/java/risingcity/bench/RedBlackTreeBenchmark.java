@@ -0,0 +1,102 @@
+package risingcity.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import risingcity.ArrayRedBlackTree;
+import risingcity.BuildingTree;
+import risingcity.OutputWriter;
+import risingcity.PersistentRedBlackTree;
+import risingcity.QueryBatch;
+import risingcity.RedBlackTree;
+import risingcity.risingCity;
+
+/**
+ * Red black tree operations at a steady no of buildings for every tree backend: put and delete of a building,
+ * lookup of a random building, and printing a range of about 16 buildings to a discarding writer. The batch
+ * benchmarks print 32 such ranges of the same day one at a time and through a QueryBatch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedBlackTreeBenchmark {
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"pointer", "array", "persistent"})
+    public String tree;
+
+    private BuildingTree buildings;
+    private OutputWriter out;
+    private final Random random = new Random(42);
+    private int nextBuildingNo;
+    private int range; // width of the range of building nos which holds about 16 buildings
+    private final QueryBatch queryBatch = new QueryBatch();
+    private final int[] lows = new int[32];
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        buildings = tree.equals("array") ? new ArrayRedBlackTree(size)
+                : tree.equals("persistent") ? new PersistentRedBlackTree() : new RedBlackTree();
+        nextBuildingNo = 0;
+        for (int i = 0; i < size; i++)
+            buildings.put(TraceGenerator.buildingNo(nextBuildingNo++), 0, i);
+        range = (int) (16L * Integer.MAX_VALUE / size);
+        out = new OutputWriter(Channels.newChannel(OutputStream.nullOutputStream()));
+    }
+
+    // insert a new building and delete the oldest one
+    @Benchmark
+    public boolean putDelete() {
+        buildings.put(TraceGenerator.buildingNo(nextBuildingNo), 0, 1);
+        return buildings.delete(TraceGenerator.buildingNo(nextBuildingNo++ - size));
+    }
+
+    @Benchmark
+    public int get() {
+        return buildings.getExecutedTime(TraceGenerator.buildingNo(nextBuildingNo - 1 - random.nextInt(size)));
+    }
+
+    @Benchmark
+    public void printRange() throws IOException {
+        int low = random.nextInt(Integer.MAX_VALUE - range);
+        buildings.print(low, low + range, out);
+    }
+
+    @Benchmark
+    public void printRanges() throws IOException {
+        for (int i = 0; i < lows.length; i++)
+            lows[i] = random.nextInt(Integer.MAX_VALUE - range);
+        for (int low : lows)
+            buildings.print(low, low + range, out);
+    }
+
+    @Benchmark
+    public void printRangesBatched() throws IOException {
+        for (int i = 0; i < lows.length; i++)
+            lows[i] = random.nextInt(Integer.MAX_VALUE - range);
+        for (int low : lows)
+            queryBatch.add(risingCity.CMD_PRINT_RAN, low, low + range);
+        queryBatch.run(buildings, out);
+        queryBatch.clear();
+    }
+}
@@ -0,0 +1,74 @@
+package risingcity.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import risingcity.InstructionStore;
+import risingcity.SimulationConfig;
+
+/**
+ * Whole simulations of generated traces as risingCity runs them, for every tree backend and both schedulers. The
+ * replay benchmark runs the same trace from an instruction store loaded in memory, which leaves out parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimulationBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int instructions;
+
+    @Param({"--tree=pointer", "--tree=array", "--tree=persistent"})
+    public String tree;
+
+    @Param({"--scheduler=heap", "--scheduler=bucket"})
+    public String scheduler;
+
+    private Path trace;
+    private Path output;
+    private SimulationConfig config;
+    private InstructionStore store;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = TraceGenerator.temporaryTrace(instructions, 42);
+        output = Files.createTempFile("output-", ".txt");
+        config = new SimulationConfig();
+        config.parse(tree);
+        config.parse(scheduler);
+        store = InstructionStore.load(trace);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(trace);
+    }
+
+    @Benchmark
+    public long simulate() throws IOException {
+        return config.run(trace, output).getCompletionCount();
+    }
+
+    @Benchmark
+    public long replay() throws IOException {
+        return config.run(store.cursor(), output).getCompletionCount();
+    }
+}
@@ -0,0 +1,31 @@
+package risingcity.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import risingcity.WorkloadGenerator;
+
+/**
+ * Instruction files of the benchmarks, written by WorkloadGenerator with its default mix of instructions.
+ */
+public final class TraceGenerator {
+    private TraceGenerator() {
+    }
+
+    // write a trace of the given no of instructions to a temporary file which is deleted on exit
+    public static Path temporaryTrace(int instructions, long seed) throws IOException {
+        Path path = Files.createTempFile("trace-" + instructions + "-", ".txt");
+        path.toFile().deleteOnExit();
+        WorkloadGenerator generator = new WorkloadGenerator();
+        generator.setInstructions(instructions);
+        generator.setSeed(seed);
+        generator.write(path);
+        return path;
+    }
+
+    // i-th distinct building no in a scattered order
+    public static int buildingNo(int i) {
+        return WorkloadGenerator.scatteredBuildingNo(i);
+    }
+}